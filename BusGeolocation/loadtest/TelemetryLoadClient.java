@@ -0,0 +1,281 @@
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator for the telemetry ingest paths of the Bus Geolocation service, to compare them
+ * on the same machine. Runs as a single-file program:
+ *
+ * <pre>
+ * java TelemetryLoadClient.java --mode udp   --threads 4  --duration 30
+ * java TelemetryLoadClient.java --mode rest  --threads 32 --duration 30
+ * java TelemetryLoadClient.java --mode sync  --threads 32 --duration 30
+ * java TelemetryLoadClient.java --mode batch --threads 8  --duration 30 --batch-size 500 --format ndjson
+ * </pre>
+ *
+ * Options (defaults in brackets): --mode udp|rest|sync|batch [udp], --host [localhost],
+ * --udp-port [5600], --http-port [8086], --threads [4], --duration seconds [30], --devices [20],
+ * --device-prefix [DEVICE-], --records-per-datagram [8], --batch-size [100],
+ * --format json|ndjson [json].
+ *
+ * <p>{@code udp} and {@code rest} go through the write-behind pipeline ({@code rest} posts to
+ * {@code /ingest/async}); both report what the service itself wrote over the run, read from its
+ * {@code telemetry.writebehind.fixes} metric, since UDP sends are fire-and-forget and the client
+ * send rate alone says nothing about what was stored. {@code sync} posts one fix per request to
+ * {@code /ingest} and {@code batch} posts {@code batch-size} fixes per request to
+ * {@code /ingest/batch}; both store the fixes before answering, so they count the fixes the
+ * service reported as accepted and also print request latency percentiles.
+ *
+ * <p>Device ids must belong to registered buses ({@code DEVICE-001} to {@code DEVICE-020} with
+ * the sample data). Once the database is the bottleneck it bounds every mode.
+ */
+public class TelemetryLoadClient {
+
+    // Layout of com.bustransport.geolocation.ingest.BinaryTelemetryFormat
+    private static final int RECORD_SIZE = 56;
+    private static final int DEVICE_ID_LENGTH = 24;
+
+    private final Map<String, String> options;
+    private final int devices;
+    private final String devicePrefix;
+    // Last timestamp sent per device; each fix gets a fresh one so none is dropped as a resend
+    private final AtomicLongArray lastTimestamps;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Queue<long[]> latencies = new ConcurrentLinkedQueue<>();
+
+    private TelemetryLoadClient(Map<String, String> options) {
+        this.options = options;
+        this.devices = Integer.parseInt(options.getOrDefault("devices", "20"));
+        this.devicePrefix = options.getOrDefault("device-prefix", "DEVICE-");
+        this.lastTimestamps = new AtomicLongArray(devices);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        new TelemetryLoadClient(options).run();
+    }
+
+    private void run() throws Exception {
+        String mode = options.getOrDefault("mode", "udp");
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        long durationMillis = Long.parseLong(options.getOrDefault("duration", "30")) * 1000;
+        String host = options.getOrDefault("host", "localhost");
+        String baseUrl = "http://" + host + ":" + options.getOrDefault("http-port", "8086") + "/api/v1";
+
+        HttpClient http = HttpClient.newHttpClient();
+        double writtenBefore = writtenFixes(http, baseUrl);
+        long start = System.currentTimeMillis();
+        long deadline = start + durationMillis;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Runnable worker = switch (mode) {
+                case "rest" -> () -> restLoop(http, URI.create(baseUrl + "/locations/ingest/async"), deadline);
+                case "sync" -> () -> restLoop(http, URI.create(baseUrl + "/locations/ingest"), deadline);
+                case "batch" -> () -> batchLoop(http, baseUrl, deadline);
+                case "udp" -> () -> udpLoop(host, Integer.parseInt(options.getOrDefault("udp-port", "5600")), deadline);
+                default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+            };
+            Thread thread = new Thread(worker, "load-" + t);
+            thread.start();
+            workers.add(thread);
+        }
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        double seconds = (System.currentTimeMillis() - start) / 1000.0;
+
+        // Give the write-behind writers time to flush what is still queued
+        Thread.sleep(2000);
+        double writtenAfter = writtenFixes(http, baseUrl);
+
+        System.out.printf(Locale.ROOT, "mode=%s threads=%d duration=%.1fs%n", mode, threads, seconds);
+        System.out.printf(Locale.ROOT, "client: sent=%d failed=%d (%.0f fixes/s)%n",
+            sent.get(), failed.get(), sent.get() / seconds);
+        printLatencies();
+        if ("sync".equals(mode) || "batch".equals(mode)) {
+            // Stored before the response, so the accepted count is what was written
+            return;
+        }
+        if (writtenBefore >= 0 && writtenAfter >= 0) {
+            System.out.printf(Locale.ROOT, "service: written=%.0f (%.0f fixes/s)%n",
+                writtenAfter - writtenBefore, (writtenAfter - writtenBefore) / seconds);
+        } else {
+            System.out.println("service: metrics endpoint not reachable");
+        }
+    }
+
+    private void udpLoop(String host, int port, long deadline) {
+        int perDatagram = Integer.parseInt(options.getOrDefault("records-per-datagram", "8"));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(RECORD_SIZE * perDatagram);
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(new InetSocketAddress(host, port));
+            while (System.currentTimeMillis() < deadline) {
+                buffer.clear();
+                for (int i = 0; i < perDatagram; i++) {
+                    int device = ThreadLocalRandom.current().nextInt(devices);
+                    writeRecord(buffer, deviceId(device), nextTimestamp(device));
+                }
+                buffer.flip();
+                channel.write(buffer);
+                sent.addAndGet(perDatagram);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("UDP sender stopped: " + e);
+        }
+    }
+
+    private void restLoop(HttpClient http, URI uri, long deadline) {
+        List<Long> times = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(fixJson()))
+                .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                times.add(System.nanoTime() - start);
+                if (response.statusCode() / 100 == 2) {
+                    sent.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+            }
+        }
+        latencies.add(times.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private void batchLoop(HttpClient http, String baseUrl, long deadline) {
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "100"));
+        boolean ndjson = "ndjson".equals(options.getOrDefault("format", "json"));
+        URI uri = URI.create(baseUrl + "/locations/ingest/batch");
+        Pattern accepted = Pattern.compile("\"accepted\"\\s*:\\s*(\\d+)");
+        List<Long> times = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline) {
+            StringBuilder body = new StringBuilder(batchSize * 180);
+            body.append(ndjson ? "" : "[");
+            for (int i = 0; i < batchSize; i++) {
+                if (i > 0) {
+                    body.append(ndjson ? "\n" : ",");
+                }
+                body.append(fixJson());
+            }
+            body.append(ndjson ? "\n" : "]");
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", ndjson ? "application/x-ndjson" : "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                times.add(System.nanoTime() - start);
+                Matcher matcher = accepted.matcher(response.body());
+                int count = response.statusCode() / 100 == 2 && matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+                sent.addAndGet(count);
+                failed.addAndGet(batchSize - count);
+            } catch (Exception e) {
+                failed.addAndGet(batchSize);
+            }
+        }
+        latencies.add(times.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private String fixJson() {
+        int device = ThreadLocalRandom.current().nextInt(devices);
+        long timestamp = nextTimestamp(device);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(Locale.ROOT,
+            "{\"deviceId\":\"%s\",\"latitude\":%.7f,\"longitude\":%.7f,\"speed\":%.2f,\"heading\":%.2f," +
+            "\"accuracy\":5.0,\"timestamp\":\"%s\"}",
+            deviceId(device), 48.85 + random.nextDouble(-0.05, 0.05), 2.35 + random.nextDouble(-0.05, 0.05),
+            random.nextDouble(0, 50), random.nextDouble(0, 360),
+            // REST timestamps are in the server's local time; the client runs on the same machine
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()));
+    }
+
+    private void printLatencies() {
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        if (all.length == 0) {
+            return;
+        }
+        System.out.printf(Locale.ROOT, "latency: requests=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms%n",
+            all.length, percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99),
+            all[all.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private void writeRecord(ByteBuffer buffer, String deviceId, long timestamp) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        buffer.put((byte) 1);
+        buffer.put((byte) 0x02); // accuracy present
+        byte[] id = deviceId.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < DEVICE_ID_LENGTH; i++) {
+            buffer.put(i < id.length ? id[i] : 0);
+        }
+        buffer.putLong(timestamp);
+        buffer.putInt((int) Math.round((48.85 + random.nextDouble(-0.05, 0.05)) * 1e7));
+        buffer.putInt((int) Math.round((2.35 + random.nextDouble(-0.05, 0.05)) * 1e7));
+        buffer.putShort((short) random.nextInt(0, 5000));
+        buffer.putShort((short) random.nextInt(0, 36000));
+        buffer.putInt(0);
+        buffer.putShort((short) 500);
+        buffer.putInt(0);
+    }
+
+    private String deviceId(int device) {
+        return devicePrefix + String.format("%03d", device + 1);
+    }
+
+    private long nextTimestamp(int device) {
+        long now = System.currentTimeMillis();
+        return lastTimestamps.updateAndGet(device, last -> Math.max(now, last + 1));
+    }
+
+    /**
+     * Total fixes the service has written to the database, or -1 if unknown.
+     */
+    private static double writtenFixes(HttpClient http, String baseUrl) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(
+                URI.create(baseUrl + "/actuator/metrics/telemetry.writebehind.fixes?tag=outcome:written")).build();
+            String body = http.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = Pattern.compile("\"statistic\"\\s*:\\s*\"COUNT\"\\s*,\\s*\"value\"\\s*:\\s*([0-9.Ee+-]+)")
+                .matcher(body);
+            return matcher.find() ? Double.parseDouble(matcher.group(1)) : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.bustransport.geolocation.websocket;
+
+import com.bustransport.geolocation.dto.response.LocationDeltaDTO;
+import com.bustransport.geolocation.dto.response.LocationFrameDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.entity.BusLocation;
+import com.bustransport.geolocation.enums.BusStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-fix cost of publishing one bus position to its bus, route and fleet topics: the entity
+ * converted and sent through {@link SimpMessagingTemplate} once per destination, as before, against
+ * a {@link LocationDeltaDTO} frame encoded once and sent as bytes by {@link EncodedMessagePublisher}.
+ * The broker channel discards messages, so only serialization and message building are measured.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="BroadcastSerializationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastSerializationBenchmark {
+
+    @Param({"1", "3"})
+    private int destinations;
+
+    private String[] topics;
+    private BusLocation location;
+    private LocationFrameDTO frame;
+    private SimpMessagingTemplate messagingTemplate;
+    private EncodedMessagePublisher publisher;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MessageChannel brokerChannel = (message, timeout) -> {
+            blackhole.consume(message);
+            return true;
+        };
+
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(converter);
+        publisher = new EncodedMessagePublisher(brokerChannel, objectMapper);
+
+        String[] allTopics = {
+            LocationBroadcaster.BUS_TOPIC_PREFIX + 42,
+            LocationBroadcaster.ROUTE_TOPIC_PREFIX + 7,
+            LocationBroadcaster.FLEET_TOPIC
+        };
+        topics = List.of(allTopics).subList(0, destinations).toArray(String[]::new);
+
+        Bus bus = Bus.builder()
+            .id(42L)
+            .busNumber("BUS-042")
+            .routeId(7L)
+            .capacity(50)
+            .status(BusStatus.ACTIVE)
+            .lastMaintenanceDate(LocalDate.of(2024, 3, 1))
+            .deviceId("DEVICE-042")
+            .model("Citaro")
+            .plateNumber("AB-123-CD")
+            .createdAt(LocalDateTime.of(2024, 1, 1, 8, 0))
+            .updatedAt(LocalDateTime.of(2024, 3, 1, 8, 0))
+            .build();
+        location = BusLocation.builder()
+            .id(123_456L)
+            .bus(bus)
+            .latitude(new BigDecimal("48.8566140"))
+            .longitude(new BigDecimal("2.3522219"))
+            .speed(new BigDecimal("32.50"))
+            .heading(new BigDecimal("187.25"))
+            .altitude(new BigDecimal("35.00"))
+            .accuracy(new BigDecimal("4.50"))
+            .recordedAt(LocalDateTime.of(2024, 3, 1, 8, 15, 30))
+            .odometer(new BigDecimal("152340.25"))
+            .createdAt(LocalDateTime.of(2024, 3, 1, 8, 15, 31))
+            .build();
+        frame = LocationFrameDTO.builder()
+            .sequence(1_000)
+            .keyframe(false)
+            .updates(List.of(LocationDeltaDTO.builder()
+                .busId(42L)
+                .latitude(48.856614)
+                .longitude(2.3522219)
+                .speed(32.5)
+                .heading(187.25)
+                .recordedAt(1_709_280_930_000L)
+                .build()))
+            .build();
+    }
+
+    @Benchmark
+    public void entityPerDestination() {
+        for (String topic : topics) {
+            messagingTemplate.convertAndSend(topic, location);
+        }
+    }
+
+    @Benchmark
+    public void encodedOnce() {
+        byte[] payload = publisher.encode(frame);
+        for (String topic : topics) {
+            publisher.send(topic, payload);
+        }
+    }
+}
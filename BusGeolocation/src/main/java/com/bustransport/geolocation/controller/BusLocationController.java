@@ -1,18 +1,37 @@
 package com.bustransport.geolocation.controller;
 
 import com.bustransport.geolocation.dto.request.TelemetryIngestDTO;
+import com.bustransport.geolocation.dto.response.BatchIngestResultDTO;
 import com.bustransport.geolocation.dto.response.BusLocationDTO;
+import com.bustransport.geolocation.enums.ExportFormat;
+import com.bustransport.geolocation.enums.IngestStatus;
 import com.bustransport.geolocation.service.BusLocationService;
+import com.bustransport.geolocation.service.LocationExportService;
+import com.bustransport.geolocation.sse.LocationStreamHub;
+import com.bustransport.geolocation.websocket.LocationBroadcaster;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/locations")
@@ -20,7 +39,15 @@ import java.util.List;
 @Tag(name = "Bus Locations", description = "Bus location tracking and telemetry APIs")
 public class BusLocationController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final BusLocationService locationService;
+    private final LocationExportService exportService;
+    private final LocationStreamHub streamHub;
+    private final ObjectMapper objectMapper;
+
+    @Value("${ingest.batch.max-size:1000}")
+    private int maxBatchSize;
 
     @PostMapping("/ingest")
     @Operation(summary = "Ingest GPS telemetry data")
@@ -28,6 +55,42 @@ public class BusLocationController {
         return ResponseEntity.ok(locationService.ingestTelemetry(telemetry));
     }
 
+    @PostMapping("/ingest/async")
+    @Operation(summary = "Queue GPS telemetry data for asynchronous storage")
+    public ResponseEntity<Void> acceptTelemetry(@Valid @RequestBody TelemetryIngestDTO telemetry) {
+        IngestStatus status = locationService.acceptTelemetry(telemetry);
+        if (status == IngestStatus.REJECTED) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping(value = "/ingest/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Ingest a batch of GPS telemetry fixes")
+    public ResponseEntity<BatchIngestResultDTO> ingestTelemetryBatch(@RequestBody List<TelemetryIngestDTO> batch) {
+        return ResponseEntity.ok(locationService.ingestTelemetryBatch(batch));
+    }
+
+    @PostMapping(value = "/ingest/batch", consumes = APPLICATION_NDJSON)
+    @Operation(summary = "Ingest a batch of GPS telemetry fixes as newline-delimited JSON")
+    public ResponseEntity<BatchIngestResultDTO> ingestTelemetryNdjson(InputStream body) throws IOException {
+        // Read record by record so that an oversized body is refused without being buffered
+        List<TelemetryIngestDTO> batch = new ArrayList<>();
+        try (MappingIterator<TelemetryIngestDTO> records =
+                 objectMapper.readerFor(TelemetryIngestDTO.class).readValues(body)) {
+            while (records.hasNextValue()) {
+                if (batch.size() == maxBatchSize) {
+                    throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "Batch exceeds the limit of " + maxBatchSize + " fixes");
+                }
+                batch.add(records.nextValue());
+            }
+        }
+        return ResponseEntity.ok(locationService.ingestTelemetryBatch(batch));
+    }
+
     @GetMapping("/bus/{busId}/current")
     @Operation(summary = "Get current location of a bus")
     public ResponseEntity<BusLocationDTO> getCurrentLocation(@PathVariable Long busId) {
@@ -35,12 +98,58 @@ public class BusLocationController {
     }
 
     @GetMapping("/bus/{busId}/history")
-    @Operation(summary = "Get location history for a bus")
+    @Operation(summary = "Get location history for a bus, optionally simplified to a tolerance in meters and/or a maximum number of points")
     public ResponseEntity<List<BusLocationDTO>> getLocationHistory(
             @PathVariable Long busId,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
-        return ResponseEntity.ok(locationService.getLocationHistory(busId, startTime, endTime));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(required = false) Integer maxPoints) {
+        return ResponseEntity.ok(locationService.getLocationHistory(busId, startTime, endTime, tolerance, maxPoints));
+    }
+
+    @GetMapping("/history/export")
+    @Operation(summary = "Stream location history of buses or of a route as NDJSON or CSV")
+    public ResponseEntity<StreamingResponseBody> exportLocationHistory(
+            @RequestParam(required = false) Set<Long> busIds,
+            @RequestParam(required = false) Long routeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        StreamingResponseBody body = exportService.exportHistory(busIds, routeId, startTime, endTime, format);
+        if (format == ExportFormat.CSV) {
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"location-history.csv\"")
+                .body(body);
+        }
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+            .body(body);
+    }
+
+    @GetMapping("/stream")
+    @Operation(summary = "Stream location frames of a route, or of the whole fleet, as Server-Sent Events; "
+        + "replay=true streams the running history replay instead of live positions")
+    public ResponseEntity<ResponseBodyEmitter> streamLocations(
+            @RequestParam(required = false) Long routeId,
+            @RequestParam(defaultValue = "false") boolean replay,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        String destination = routeId != null
+            ? LocationBroadcaster.ROUTE_TOPIC_PREFIX + routeId
+            : LocationBroadcaster.FLEET_TOPIC;
+        if (replay) {
+            destination = LocationBroadcaster.replayTopic(destination);
+        }
+        return streamHub.subscribe(destination, lastEventId)
+            .map(emitter -> ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header("X-Accel-Buffering", "no")
+                .body(emitter))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "5")
+                .build());
     }
 
     @GetMapping("/active")
@@ -48,5 +157,13 @@ public class BusLocationController {
     public ResponseEntity<List<BusLocationDTO>> getAllActiveBusLocations() {
         return ResponseEntity.ok(locationService.getAllActiveBusLocations());
     }
+
+    @GetMapping("/within")
+    @Operation(summary = "Get active bus locations inside a bounding box (minLon,minLat,maxLon,maxLat)")
+    public ResponseEntity<List<BusLocationDTO>> getActiveBusLocationsWithin(
+            @RequestParam String bbox,
+            @RequestParam(required = false) Set<Long> routeIds) {
+        return ResponseEntity.ok(locationService.getActiveBusLocationsWithin(bbox, routeIds));
+    }
 }
 
@@ -0,0 +1,35 @@
+package com.bustransport.geolocation.controller;
+
+import com.bustransport.geolocation.dto.response.LiveTrackingDTO;
+import com.bustransport.geolocation.dto.response.StopArrivalDTO;
+import com.bustransport.geolocation.service.EtaService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/eta")
+@RequiredArgsConstructor
+@Tag(name = "ETA", description = "Live tracking and stop arrival prediction APIs")
+public class EtaController {
+
+    private final EtaService etaService;
+
+    @GetMapping("/bus/{busId}")
+    @Operation(summary = "Get live tracking of a bus with its next stop and ETA")
+    public ResponseEntity<LiveTrackingDTO> getLiveTracking(@PathVariable Long busId) {
+        return ResponseEntity.ok(etaService.getLiveTracking(busId));
+    }
+
+    @GetMapping("/stop/{stopId}")
+    @Operation(summary = "Get the buses expected at a stop, soonest first")
+    public ResponseEntity<List<StopArrivalDTO>> getStopArrivals(
+            @PathVariable Long stopId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(etaService.getStopArrivals(stopId, limit));
+    }
+}
@@ -0,0 +1,62 @@
+package com.bustransport.geolocation.controller;
+
+import com.bustransport.geolocation.dto.request.GeofenceRequestDTO;
+import com.bustransport.geolocation.dto.response.GeofenceDTO;
+import com.bustransport.geolocation.service.GeofenceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/geofences")
+@RequiredArgsConstructor
+@Tag(name = "Geofences", description = "Geofence management APIs")
+public class GeofenceController {
+
+    private final GeofenceService geofenceService;
+
+    @GetMapping
+    @Operation(summary = "Get all geofences")
+    public ResponseEntity<List<GeofenceDTO>> getAllGeofences() {
+        return ResponseEntity.ok(geofenceService.getAllGeofences());
+    }
+
+    @GetMapping("/{geofenceId}")
+    @Operation(summary = "Get geofence by ID")
+    public ResponseEntity<GeofenceDTO> getGeofence(@PathVariable Long geofenceId) {
+        return ResponseEntity.ok(geofenceService.getGeofence(geofenceId));
+    }
+
+    @GetMapping("/bus/{busId}")
+    @Operation(summary = "Get the geofences a bus is currently inside")
+    public ResponseEntity<List<GeofenceDTO>> getGeofencesContainingBus(@PathVariable Long busId) {
+        return ResponseEntity.ok(geofenceService.getGeofencesContainingBus(busId));
+    }
+
+    @PostMapping
+    @Operation(summary = "Create a geofence")
+    public ResponseEntity<GeofenceDTO> createGeofence(@Valid @RequestBody GeofenceRequestDTO request) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(geofenceService.createGeofence(request));
+    }
+
+    @PutMapping("/{geofenceId}")
+    @Operation(summary = "Update a geofence")
+    public ResponseEntity<GeofenceDTO> updateGeofence(
+            @PathVariable Long geofenceId,
+            @Valid @RequestBody GeofenceRequestDTO request) {
+        return ResponseEntity.ok(geofenceService.updateGeofence(geofenceId, request));
+    }
+
+    @DeleteMapping("/{geofenceId}")
+    @Operation(summary = "Delete a geofence")
+    public ResponseEntity<Void> deleteGeofence(@PathVariable Long geofenceId) {
+        geofenceService.deleteGeofence(geofenceId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.bustransport.geolocation.controller;
+
+import com.bustransport.geolocation.dto.response.HeatmapHourDTO;
+import com.bustransport.geolocation.dto.response.HeatmapTileDTO;
+import com.bustransport.geolocation.service.HeatmapService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/heatmap")
+@RequiredArgsConstructor
+@Tag(name = "Heatmap", description = "Aggregated speed and presence by area and time APIs")
+public class HeatmapController {
+
+    private final HeatmapService heatmapService;
+
+    @GetMapping("/tiles")
+    @Operation(summary = "Get fix counts and speeds per tile inside a bounding box (minLon,minLat,maxLon,maxLat)")
+    public ResponseEntity<List<HeatmapTileDTO>> getTiles(
+            @RequestParam String bbox,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) Set<Integer> hours) {
+        return ResponseEntity.ok(heatmapService.getTiles(bbox, startTime, endTime, hours));
+    }
+
+    @GetMapping("/hourly")
+    @Operation(summary = "Get fix counts and speeds inside a bounding box for each hour of the day")
+    public ResponseEntity<List<HeatmapHourDTO>> getHourlyProfile(
+            @RequestParam String bbox,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(heatmapService.getHourlyProfile(bbox, startTime, endTime));
+    }
+}
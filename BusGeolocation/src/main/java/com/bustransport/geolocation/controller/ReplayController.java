@@ -0,0 +1,47 @@
+package com.bustransport.geolocation.controller;
+
+import com.bustransport.geolocation.dto.response.ReplayStatusDTO;
+import com.bustransport.geolocation.service.ReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/replay")
+@RequiredArgsConstructor
+@Tag(name = "Replay", description = "Historical location replay APIs")
+public class ReplayController {
+
+    private final ReplayService replayService;
+
+    @PostMapping
+    @Operation(summary = "Replay stored locations of a time range through the live pipeline")
+    public ResponseEntity<ReplayStatusDTO> startReplay(
+            @RequestParam(required = false) Set<Long> busIds,
+            @RequestParam(required = false) Long routeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "1") double speed) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .body(replayService.startReplay(busIds, routeId, startTime, endTime, speed));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get the status of the latest replay")
+    public ResponseEntity<ReplayStatusDTO> getReplayStatus() {
+        return ResponseEntity.ok(replayService.getReplayStatus());
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Stop the running replay")
+    public ResponseEntity<ReplayStatusDTO> stopReplay() {
+        return ResponseEntity.ok(replayService.stopReplay());
+    }
+}
@@ -0,0 +1,55 @@
+package com.bustransport.geolocation.controller;
+
+import com.bustransport.geolocation.dto.response.LocationTraceDTO;
+import com.bustransport.geolocation.dto.response.TracePointDTO;
+import com.bustransport.geolocation.service.LocationTraceService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/traces")
+@RequiredArgsConstructor
+@Tag(name = "Location Traces", description = "Compacted trip trace APIs")
+public class TraceController {
+
+    private final LocationTraceService traceService;
+
+    @PostMapping("/bus/{busId}")
+    @Operation(summary = "Compact a finished trip of a bus into a trace")
+    public ResponseEntity<LocationTraceDTO> buildTrace(
+            @PathVariable Long busId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(traceService.buildTrace(busId, startTime, endTime));
+    }
+
+    @GetMapping("/bus/{busId}/recent")
+    @Operation(summary = "Get the most recent traces of a bus")
+    public ResponseEntity<List<LocationTraceDTO>> getRecentTraces(
+            @PathVariable Long busId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(traceService.getRecentTraces(busId, limit));
+    }
+
+    @GetMapping("/route/{routeId}")
+    @Operation(summary = "Get traces of a route started within a time range")
+    public ResponseEntity<List<LocationTraceDTO>> getTracesByRoute(
+            @PathVariable Long routeId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        return ResponseEntity.ok(traceService.getTracesByRoute(routeId, startTime, endTime));
+    }
+
+    @GetMapping("/{traceId}/points")
+    @Operation(summary = "Get the decoded points of a trace")
+    public ResponseEntity<List<TracePointDTO>> getTracePoints(@PathVariable Long traceId) {
+        return ResponseEntity.ok(traceService.getTracePoints(traceId));
+    }
+}
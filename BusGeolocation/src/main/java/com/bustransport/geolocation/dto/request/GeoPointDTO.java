@@ -0,0 +1,24 @@
+package com.bustransport.geolocation.dto.request;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeoPointDTO {
+
+    @NotNull(message = "Latitude is required")
+    @DecimalMin("-90") @DecimalMax("90")
+    private Double latitude;
+
+    @NotNull(message = "Longitude is required")
+    @DecimalMin("-180") @DecimalMax("180")
+    private Double longitude;
+}
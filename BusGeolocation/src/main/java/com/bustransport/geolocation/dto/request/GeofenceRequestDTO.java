@@ -0,0 +1,41 @@
+package com.bustransport.geolocation.dto.request;
+
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.GeofenceType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceRequestDTO {
+
+    @NotBlank(message = "Name is required")
+    private String name;
+
+    @NotNull(message = "Type is required")
+    private GeofenceType type;
+
+    @NotNull(message = "Polygon is required")
+    @Size(min = 3, message = "Polygon needs at least 3 points")
+    private List<@Valid GeoPointDTO> polygon;
+
+    private Boolean alertOnEnter;
+    private Boolean alertOnExit;
+
+    @Positive
+    private Integer dwellSeconds;
+
+    private AlertSeverity severity;
+    private Boolean active;
+}
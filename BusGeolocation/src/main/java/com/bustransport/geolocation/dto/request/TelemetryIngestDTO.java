@@ -1,5 +1,7 @@
 package com.bustransport.geolocation.dto.request;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -19,19 +21,37 @@ public class TelemetryIngestDTO {
     private String deviceId;
     
     @NotNull(message = "Latitude is required")
+    @DecimalMin(value = "-90", message = "Latitude must be between -90 and 90")
+    @DecimalMax(value = "90", message = "Latitude must be between -90 and 90")
     private BigDecimal latitude;
     
     @NotNull(message = "Longitude is required")
+    @DecimalMin(value = "-180", message = "Longitude must be between -180 and 180")
+    @DecimalMax(value = "180", message = "Longitude must be between -180 and 180")
     private BigDecimal longitude;
     
+    // Bounds follow the bus_locations column precisions
+    @DecimalMin(value = "0", message = "Speed must be between 0 and 999.99")
+    @DecimalMax(value = "999.99", message = "Speed must be between 0 and 999.99")
     private BigDecimal speed;
+
+    @DecimalMin(value = "0", message = "Heading must be between 0 and 360")
+    @DecimalMax(value = "360", message = "Heading must be between 0 and 360")
     private BigDecimal heading;
+
+    @DecimalMin(value = "-9999.99", message = "Altitude must be between -9999.99 and 9999.99")
+    @DecimalMax(value = "9999.99", message = "Altitude must be between -9999.99 and 9999.99")
     private BigDecimal altitude;
+
+    @DecimalMin(value = "0", message = "Accuracy must be between 0 and 999.99")
+    @DecimalMax(value = "999.99", message = "Accuracy must be between 0 and 999.99")
     private BigDecimal accuracy;
     
     @NotNull(message = "Timestamp is required")
     private LocalDateTime timestamp;
     
+    @DecimalMin(value = "0", message = "Odometer must be between 0 and 99999999.99")
+    @DecimalMax(value = "99999999.99", message = "Odometer must be between 0 and 99999999.99")
     private BigDecimal odometer;
 }
 
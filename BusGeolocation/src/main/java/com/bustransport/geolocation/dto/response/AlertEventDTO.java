@@ -0,0 +1,29 @@
+package com.bustransport.geolocation.dto.response;
+
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.AlertType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Alert as pushed over STOMP: only the fields a live view needs, with plain coordinates.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertEventDTO {
+    private Long id;
+    private Long busId;
+    private String busNumber;
+    private AlertType alertType;
+    private AlertSeverity severity;
+    private double latitude;
+    private double longitude;
+    private String description;
+    private LocalDateTime triggeredAt;
+}
@@ -0,0 +1,21 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchIngestResultDTO {
+    private Integer received;
+    private Integer accepted;
+    private Integer rejected;
+    private Integer duplicates; // Duplicate or stale resends, dropped without error
+    private Long elapsedMillis;
+    private List<IngestItemResultDTO> results;
+}
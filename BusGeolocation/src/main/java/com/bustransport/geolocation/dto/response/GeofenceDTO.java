@@ -0,0 +1,30 @@
+package com.bustransport.geolocation.dto.response;
+
+import com.bustransport.geolocation.dto.request.GeoPointDTO;
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.GeofenceType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeofenceDTO {
+    private Long id;
+    private String name;
+    private GeofenceType type;
+    private List<GeoPointDTO> polygon;
+    private Boolean alertOnEnter;
+    private Boolean alertOnExit;
+    private Integer dwellSeconds;
+    private AlertSeverity severity;
+    private Boolean active;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
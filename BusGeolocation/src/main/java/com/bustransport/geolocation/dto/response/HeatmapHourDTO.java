@@ -0,0 +1,18 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HeatmapHourDTO {
+    private Integer hour;
+    private Long fixes;
+    private Double averageSpeed; // km/h, null if no fix reported a speed
+    private Double minSpeed;
+    private Double maxSpeed;
+}
@@ -0,0 +1,19 @@
+package com.bustransport.geolocation.dto.response;
+
+import com.bustransport.geolocation.enums.IngestStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestItemResultDTO {
+    private Integer index;
+    private String deviceId;
+    private IngestStatus status;
+    private Long locationId;
+    private String error;
+}
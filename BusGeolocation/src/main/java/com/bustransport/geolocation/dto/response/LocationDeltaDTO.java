@@ -0,0 +1,32 @@
+package com.bustransport.geolocation.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Position change of one bus since the last broadcast. Fields that did not change are omitted;
+ * fields the bus stopped reporting are named in {@code cleared}. {@code removed} tells
+ * subscribers of a route topic that the bus has moved to another route.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LocationDeltaDTO {
+    private Long busId;
+    private String busNumber;
+    private Long routeId;
+    private Double latitude;
+    private Double longitude;
+    private Double speed;
+    private Double heading;
+    private Long recordedAt;
+    private List<String> cleared;
+    private Boolean removed;
+}
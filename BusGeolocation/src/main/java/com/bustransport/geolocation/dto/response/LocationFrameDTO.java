@@ -0,0 +1,25 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * All position changes published to one topic during a broadcast tick. A keyframe carries the
+ * full state of every bus on the topic rather than deltas. {@code previousSequence} is the
+ * sequence of the frame published to the same topic before this one, absent on the first, so a
+ * client that did not receive it knows it missed deltas and must wait for the next keyframe.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationFrameDTO {
+    private long sequence;
+    private Long previousSequence;
+    private boolean keyframe;
+    private List<LocationDeltaDTO> updates;
+}
@@ -0,0 +1,26 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationTraceDTO {
+    private Long id;
+    private Long busId;
+    private Long routeId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private BigDecimal totalDistance;
+    private Integer totalStops;
+    private BigDecimal averageSpeed;
+    private Integer pointCount;
+    private Integer encodedBytes;
+}
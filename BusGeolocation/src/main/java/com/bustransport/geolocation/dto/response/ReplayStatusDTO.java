@@ -0,0 +1,26 @@
+package com.bustransport.geolocation.dto.response;
+
+import com.bustransport.geolocation.enums.ReplayState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayStatusDTO {
+    private ReplayState state;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Double speed;
+    private Integer buses;
+    private Long fixesEmitted;
+    private LocalDateTime replayedUpTo; // Recording time of the latest fix emitted
+    private Long lagMillis; // How far emission is behind the replay clock
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
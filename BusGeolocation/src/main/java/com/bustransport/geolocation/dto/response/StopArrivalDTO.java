@@ -0,0 +1,24 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StopArrivalDTO {
+    private Long stopId;
+    private String stopName;
+    private Long busId;
+    private String busNumber;
+    private Long routeId;
+    private String routeName;
+    private LocalDateTime expectedArrival;
+    private Integer minutes;
+    private Boolean onSchedule;
+}
@@ -0,0 +1,19 @@
+package com.bustransport.geolocation.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TracePointDTO {
+    private double latitude;
+    private double longitude;
+    private double speed;
+    private LocalDateTime recordedAt;
+}
@@ -0,0 +1,23 @@
+package com.bustransport.geolocation.dto.route;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Route as served by the Route service ({@code GET /routes/{id}}), reduced to the fields used here.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteDTO {
+    private Long id;
+    private String routeNumber;
+    private String name;
+    private String polyline;
+    private List<RouteStopDTO> stops;
+}
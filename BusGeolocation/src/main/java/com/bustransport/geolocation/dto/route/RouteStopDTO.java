@@ -0,0 +1,16 @@
+package com.bustransport.geolocation.dto.route;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouteStopDTO {
+    private Integer stopSequence;
+    private Integer dwellTime;
+    private StopDTO stop;
+}
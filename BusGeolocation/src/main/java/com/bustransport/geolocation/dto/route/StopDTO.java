@@ -0,0 +1,19 @@
+package com.bustransport.geolocation.dto.route;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StopDTO {
+    private Long id;
+    private String name;
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+}
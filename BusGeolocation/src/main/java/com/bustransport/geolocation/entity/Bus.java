@@ -1,6 +1,7 @@
 package com.bustransport.geolocation.entity;
 
 import com.bustransport.geolocation.enums.BusStatus;
+import com.bustransport.geolocation.store.DeviceRegistryListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -20,6 +21,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@EntityListeners(DeviceRegistryListener.class)
 public class Bus {
 
     @Id
@@ -0,0 +1,61 @@
+package com.bustransport.geolocation.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One row per bus holding its most recent fix, upserted on every ingest so that
+ * "latest position" reads never touch the {@code bus_locations} history.
+ */
+@Entity
+@Table(name = "bus_latest_location", indexes = {
+    @Index(name = "idx_latest_recorded", columnList = "recordedAt")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BusLatestLocation {
+
+    @Id
+    @Column(name = "bus_id")
+    private Long busId;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "bus_id", insertable = false, updatable = false)
+    private Bus bus;
+
+    @Column(nullable = false)
+    private Long locationId;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal latitude;
+
+    @Column(nullable = false, precision = 10, scale = 7)
+    private BigDecimal longitude;
+
+    @Column(nullable = false, precision = 5, scale = 2)
+    private BigDecimal speed;
+
+    @Column(nullable = false, precision = 5, scale = 2)
+    private BigDecimal heading;
+
+    @Column(precision = 6, scale = 2)
+    private BigDecimal altitude;
+
+    @Column(precision = 5, scale = 2)
+    private BigDecimal accuracy;
+
+    @Column(nullable = false)
+    private LocalDateTime recordedAt;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal odometer;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
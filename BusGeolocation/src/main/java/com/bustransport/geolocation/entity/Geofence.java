@@ -0,0 +1,64 @@
+package com.bustransport.geolocation.entity;
+
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.GeofenceType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "geofences", indexes = {
+    @Index(name = "idx_geofence_active", columnList = "active")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Geofence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private GeofenceType type;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String polygon; // "lat,lon;lat,lon;..." vertices, not closed
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean alertOnEnter = false;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean alertOnExit = false;
+
+    @Column
+    private Integer dwellSeconds; // Alert once a bus stays inside this long; null disables the rule
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private AlertSeverity severity = AlertSeverity.MEDIUM;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean active = true;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
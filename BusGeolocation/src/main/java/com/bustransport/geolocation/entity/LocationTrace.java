@@ -1,11 +1,14 @@
 package com.bustransport.geolocation.entity;
 
+import com.bustransport.geolocation.trace.TraceCodec;
+import com.bustransport.geolocation.trace.TracePoint;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 
 @Entity
 @Table(name = "location_traces", indexes = {
@@ -31,8 +34,12 @@ public class LocationTrace {
     @Column(nullable = false)
     private Long routeId;
 
-    @Column(columnDefinition = "TEXT")
-    private String locationsJson; // JSON array of location points
+    @Column
+    private byte[] encodedPoints; // TraceCodec delta/varint encoding of the trip's points
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer pointCount = 0;
 
     @Column(nullable = false)
     private LocalDateTime startTime;
@@ -54,5 +61,9 @@ public class LocationTrace {
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
+
+    public Iterator<TracePoint> points() {
+        return TraceCodec.decode(encodedPoints);
+    }
 }
 
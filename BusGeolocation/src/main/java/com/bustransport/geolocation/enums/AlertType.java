@@ -7,6 +7,9 @@ public enum AlertType {
     MAINTENANCE_REQUIRED,
     EMERGENCY,
     LOW_FUEL,
-    MECHANICAL_ISSUE
+    MECHANICAL_ISSUE,
+    GEOFENCE_ENTER,
+    GEOFENCE_EXIT,
+    GEOFENCE_DWELL
 }
 
@@ -0,0 +1,8 @@
+package com.bustransport.geolocation.enums;
+
+public enum GeofenceType {
+    DEPOT,
+    TERMINAL,
+    RESTRICTED_ZONE,
+    OTHER
+}
@@ -0,0 +1,9 @@
+package com.bustransport.geolocation.enums;
+
+public enum IngestStatus {
+    ACCEPTED,
+    REJECTED,
+    SHED,
+    DUPLICATE, // Already received; dropped, no retry needed
+    STALE // Older than the device's reorder window; dropped
+}
@@ -0,0 +1,8 @@
+package com.bustransport.geolocation.enums;
+
+public enum ReplayState {
+    RUNNING,
+    COMPLETED,
+    STOPPED,
+    FAILED
+}
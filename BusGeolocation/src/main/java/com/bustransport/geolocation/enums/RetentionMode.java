@@ -0,0 +1,6 @@
+package com.bustransport.geolocation.enums;
+
+public enum RetentionMode {
+    DROP,
+    ARCHIVE
+}
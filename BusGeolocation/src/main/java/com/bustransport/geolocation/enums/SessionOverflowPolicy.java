@@ -0,0 +1,6 @@
+package com.bustransport.geolocation.enums;
+
+public enum SessionOverflowPolicy {
+    DROP_OLDEST,
+    LATEST_PER_DESTINATION
+}
@@ -0,0 +1,86 @@
+package com.bustransport.geolocation.eta;
+
+import com.bustransport.geolocation.route.RouteGeometry;
+
+/**
+ * Projected arrivals of one bus at the stops left on its current trip, as of its last fix.
+ * Immutable; the {@link EtaEngine} replaces it on every fix.
+ */
+public final class BusEta {
+
+    private final long busId;
+    private final String busNumber;
+    private final RouteGeometry geometry;
+    private final int[] stops;
+    private final long[] arrivalMillis;
+    private final double delaySeconds;
+    private final long computedAtMillis;
+
+    BusEta(long busId, String busNumber, RouteGeometry geometry, int[] stops, long[] arrivalMillis,
+           double delaySeconds, long computedAtMillis) {
+        this.busId = busId;
+        this.busNumber = busNumber;
+        this.geometry = geometry;
+        this.stops = stops;
+        this.arrivalMillis = arrivalMillis;
+        this.delaySeconds = delaySeconds;
+        this.computedAtMillis = computedAtMillis;
+    }
+
+    public long getBusId() {
+        return busId;
+    }
+
+    public String getBusNumber() {
+        return busNumber;
+    }
+
+    public long getRouteId() {
+        return geometry.getRouteId();
+    }
+
+    public String getRouteName() {
+        return geometry.getName();
+    }
+
+    public int getStopCount() {
+        return stops.length;
+    }
+
+    public long getStopId(int i) {
+        return geometry.getStopId(stops[i]);
+    }
+
+    public String getStopName(int i) {
+        return geometry.getStopName(stops[i]);
+    }
+
+    public long getArrivalMillis(int i) {
+        return arrivalMillis[i];
+    }
+
+    /**
+     * Position of the stop among the remaining ones, or -1 if the bus is not going to serve it
+     * on this trip.
+     */
+    public int indexOf(long stopId) {
+        for (int i = 0; i < stops.length; i++) {
+            if (geometry.getStopId(stops[i]) == stopId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Seconds the current trip has taken so far beyond the learned travel times; negative when
+     * the bus runs faster than usual.
+     */
+    public double getDelaySeconds() {
+        return delaySeconds;
+    }
+
+    public long getComputedAtMillis() {
+        return computedAtMillis;
+    }
+}
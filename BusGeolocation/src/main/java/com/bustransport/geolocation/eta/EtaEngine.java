@@ -0,0 +1,339 @@
+package com.bustransport.geolocation.eta;
+
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.route.RouteGeometry;
+import com.bustransport.geolocation.route.RouteGeometryRegistry;
+import com.bustransport.geolocation.route.RouteSegmentIndex;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Projects each bus's arrival at the stops left on its trip. Every fix is placed along the bus's
+ * route; the stops it passed since the previous fix feed the route's {@link SegmentTravelTimes},
+ * and the remaining stops are projected from the learned times in O(remaining stops). The result
+ * is kept per bus and per stop, so reads never compute anything.
+ *
+ * <p>The direction of travel follows from the movement along the route, and a change of
+ * direction starts a new trip.
+ */
+@Component
+@Slf4j
+public class EtaEngine implements PositionUpdateListener {
+
+    private static final double MIN_MOVEMENT_METERS = 10;
+
+    private final RouteGeometryRegistry routeGeometries;
+    private final boolean enabled;
+    private final double matchDistanceMeters;
+    private final int bucketMinutes;
+    private final double halfLifeMinutes;
+    private final double priorWeight;
+    private final double priorSpeedMetersPerSecond;
+    private final long staleMillis;
+    private final Counter segmentSamples;
+
+    private final Map<Long, SegmentTravelTimes> travelTimes = new ConcurrentHashMap<>();
+    private final Map<Long, BusProgress> buses = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Long, BusEta>> arrivalsByStop = new ConcurrentHashMap<>();
+
+    public EtaEngine(FleetPositionStore positionStore,
+                     RouteGeometryRegistry routeGeometries,
+                     MeterRegistry meterRegistry,
+                     @Value("${eta.enabled:true}") boolean enabled,
+                     @Value("${eta.match-distance-meters:100}") double matchDistanceMeters,
+                     @Value("${eta.bucket-minutes:30}") int bucketMinutes,
+                     @Value("${eta.half-life-minutes:120}") double halfLifeMinutes,
+                     @Value("${eta.prior-weight:2}") double priorWeight,
+                     @Value("${eta.default-speed-kmh:20}") double defaultSpeedKmh,
+                     @Value("${eta.stale-after-seconds:300}") long staleAfterSeconds) {
+        if (bucketMinutes <= 0 || 1440 % bucketMinutes != 0) {
+            throw new IllegalArgumentException("eta.bucket-minutes must divide a day, got " + bucketMinutes);
+        }
+        this.routeGeometries = routeGeometries;
+        this.enabled = enabled;
+        this.matchDistanceMeters = matchDistanceMeters;
+        this.bucketMinutes = bucketMinutes;
+        this.halfLifeMinutes = halfLifeMinutes;
+        this.priorWeight = priorWeight;
+        this.priorSpeedMetersPerSecond = defaultSpeedKmh / 3.6;
+        this.staleMillis = staleAfterSeconds * 1000;
+        this.segmentSamples = meterRegistry.counter("eta.segment.samples");
+        meterRegistry.gaugeMapSize("eta.buses", Tags.empty(), buses);
+        positionStore.addListener(this);
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        if (!enabled || source != PositionSource.LIVE) {
+            return;
+        }
+        Optional<RouteSegmentIndex> index = routeGeometries.getSegmentIndex(routeId);
+        if (index.isEmpty()) {
+            return;
+        }
+        double distance = index.get().distanceAlongRoute(latitude, longitude, matchDistanceMeters);
+        if (Double.isNaN(distance)) {
+            // Off route: the last projection stands until the bus is back on it
+            return;
+        }
+        SegmentTravelTimes times = travelTimesFor(index.get().getGeometry());
+
+        BusProgress bus = buses.computeIfAbsent(busId, id -> new BusProgress());
+        synchronized (bus) {
+            if (bus.times != times) {
+                unpublish(busId, bus);
+                bus.reset(times);
+            }
+            if (bus.lastMillis == 0) {
+                bus.lastDistance = distance;
+                bus.lastMillis = recordedAtMillis;
+                return;
+            }
+            if (recordedAtMillis <= bus.lastMillis) {
+                return;
+            }
+
+            double moved = distance - bus.lastDistance;
+            if (Math.abs(moved) >= MIN_MOVEMENT_METERS) {
+                int direction = moved > 0 ? 0 : 1;
+                if (direction != bus.direction) {
+                    startTrip(bus, direction);
+                }
+                passStops(bus, distance, recordedAtMillis);
+                bus.lastDistance = distance;
+            }
+            bus.lastMillis = recordedAtMillis;
+
+            if (bus.direction >= 0) {
+                publish(busId, bus, project(busId, busNumber, bus, recordedAtMillis));
+            }
+        }
+    }
+
+    public Optional<BusEta> getBusEta(long busId) {
+        BusProgress bus = buses.get(busId);
+        if (bus == null) {
+            return Optional.empty();
+        }
+        BusEta eta = bus.eta;
+        return eta != null && !isStale(eta, nowMillis()) ? Optional.of(eta) : Optional.empty();
+    }
+
+    /**
+     * Buses expected at the stop, soonest first.
+     */
+    public List<BusEta> getArrivals(long stopId) {
+        Map<Long, BusEta> etas = arrivalsByStop.get(stopId);
+        if (etas == null) {
+            return List.of();
+        }
+        long now = nowMillis();
+        List<BusEta> arrivals = new ArrayList<>();
+        for (BusEta eta : etas.values()) {
+            if (!isStale(eta, now) && eta.indexOf(stopId) >= 0) {
+                arrivals.add(eta);
+            }
+        }
+        arrivals.sort(Comparator.comparingLong(eta -> eta.getArrivalMillis(eta.indexOf(stopId))));
+        return arrivals;
+    }
+
+    @Scheduled(fixedDelayString = "${eta.eviction-interval-ms:60000}")
+    public void evictStaleBuses() {
+        long now = nowMillis();
+        buses.forEach((busId, bus) -> {
+            synchronized (bus) {
+                if (bus.lastMillis < now - staleMillis) {
+                    unpublish(busId, bus);
+                    buses.remove(busId, bus);
+                }
+            }
+        });
+    }
+
+    private SegmentTravelTimes travelTimesFor(RouteGeometry geometry) {
+        // Atomic, so buses of one route seen concurrently share the same learned times
+        return travelTimes.compute(geometry.getRouteId(), (routeId, times) ->
+            times != null && times.getGeometry() == geometry
+                ? times
+                : new SegmentTravelTimes(geometry, bucketMinutes, halfLifeMinutes, priorWeight,
+                    priorSpeedMetersPerSecond));
+    }
+
+    private void startTrip(BusProgress bus, int direction) {
+        SegmentTravelTimes times = bus.times;
+        int stops = times.getGeometry().getStopCount();
+        // A bus turning at the terminal it just reached has been there since it arrived
+        boolean turning = bus.direction >= 0 && bus.lastStop == stops - 1;
+        long arrivedAt = bus.lastStopMillis;
+
+        bus.direction = direction;
+        bus.trip++;
+        bus.delaySeconds = 0;
+        double position = position(times, direction, bus.lastDistance);
+        bus.lastStop = -1;
+        while (bus.lastStop + 1 < stops
+                && times.stopPosition(direction, bus.lastStop + 1) <= position + MIN_MOVEMENT_METERS) {
+            bus.lastStop++;
+        }
+        bus.lastStopMillis = turning && bus.lastStop == 0 ? arrivedAt : -1;
+    }
+
+    /**
+     * Records the stops passed between the previous fix and this one, at times interpolated
+     * along the way, and the travel time of every segment completed.
+     */
+    private void passStops(BusProgress bus, double distance, long recordedAtMillis) {
+        SegmentTravelTimes times = bus.times;
+        int direction = bus.direction;
+        int stops = times.getGeometry().getStopCount();
+        double from = position(times, direction, bus.lastDistance);
+        double to = position(times, direction, distance);
+
+        while (bus.lastStop + 1 < stops && times.stopPosition(direction, bus.lastStop + 1) <= to) {
+            int stop = bus.lastStop + 1;
+            double fraction = to > from
+                ? Math.max(0, (times.stopPosition(direction, stop) - from) / (to - from))
+                : 1;
+            long passedAt = bus.lastMillis + Math.round((recordedAtMillis - bus.lastMillis) * fraction);
+            if (bus.lastStop >= 0 && bus.lastStopMillis >= 0) {
+                double seconds = (passedAt - bus.lastStopMillis) / 1000.0;
+                bus.delaySeconds += seconds
+                    - times.expectedSeconds(direction, bus.lastStop, bus.lastStopMillis, recordedAtMillis);
+                if (times.record(direction, bus.lastStop, bus.lastStopMillis, seconds, recordedAtMillis)) {
+                    segmentSamples.increment();
+                }
+            }
+            bus.lastStop = stop;
+            bus.lastStopMillis = passedAt;
+        }
+    }
+
+    private BusEta project(long busId, String busNumber, BusProgress bus, long nowMillis) {
+        SegmentTravelTimes times = bus.times;
+        int direction = bus.direction;
+        int next = bus.lastStop + 1;
+        int remaining = Math.max(0, times.getGeometry().getStopCount() - next);
+        int[] stops = new int[remaining];
+        long[] arrivals = new long[remaining];
+        if (remaining == 0) {
+            return new BusEta(busId, busNumber, times.getGeometry(), stops, arrivals, bus.delaySeconds, nowMillis);
+        }
+
+        double position = position(times, direction, bus.lastDistance);
+        double nextPosition = times.stopPosition(direction, next);
+        double seconds;
+        if (bus.lastStop < 0) {
+            seconds = Math.max(0, nextPosition - position) / priorSpeedMetersPerSecond;
+        } else {
+            double start = times.stopPosition(direction, bus.lastStop);
+            double done = nextPosition > start
+                ? Math.max(0, Math.min(1, (position - start) / (nextPosition - start)))
+                : 1;
+            long enteredAt = bus.lastStopMillis >= 0 ? bus.lastStopMillis : nowMillis;
+            seconds = times.expectedSeconds(direction, bus.lastStop, enteredAt, nowMillis) * (1 - done);
+        }
+
+        long at = nowMillis + Math.round(seconds * 1000);
+        for (int k = next; k < next + remaining; k++) {
+            if (k > next) {
+                at += Math.round(times.expectedSeconds(direction, k - 1, at, nowMillis) * 1000);
+            }
+            stops[k - next] = times.routeStop(direction, k);
+            arrivals[k - next] = at;
+        }
+        return new BusEta(busId, busNumber, times.getGeometry(), stops, arrivals, bus.delaySeconds, nowMillis);
+    }
+
+    /**
+     * Replaces the bus's entries in the per-stop index. Within a trip the remaining stops only
+     * lose entries at the front, so only those are removed.
+     */
+    private void publish(long busId, BusProgress bus, BusEta eta) {
+        BusEta previous = bus.eta;
+        if (previous != null) {
+            int dropped = bus.publishedTrip == bus.trip
+                ? Math.max(0, previous.getStopCount() - eta.getStopCount())
+                : previous.getStopCount();
+            for (int i = 0; i < dropped; i++) {
+                removeArrival(previous.getStopId(i), busId);
+            }
+        }
+        for (int i = 0; i < eta.getStopCount(); i++) {
+            arrivalsByStop.computeIfAbsent(eta.getStopId(i), id -> new ConcurrentHashMap<>()).put(busId, eta);
+        }
+        bus.eta = eta;
+        bus.publishedTrip = bus.trip;
+    }
+
+    private void unpublish(long busId, BusProgress bus) {
+        BusEta previous = bus.eta;
+        if (previous != null) {
+            for (int i = 0; i < previous.getStopCount(); i++) {
+                removeArrival(previous.getStopId(i), busId);
+            }
+            bus.eta = null;
+        }
+    }
+
+    private void removeArrival(long stopId, long busId) {
+        Map<Long, BusEta> etas = arrivalsByStop.get(stopId);
+        if (etas != null) {
+            etas.remove(busId);
+        }
+    }
+
+    private boolean isStale(BusEta eta, long nowMillis) {
+        return eta.getComputedAtMillis() < nowMillis - staleMillis;
+    }
+
+    private static double position(SegmentTravelTimes times, int direction, double routeDistance) {
+        return direction == 0 ? routeDistance : times.getGeometry().getLength() - routeDistance;
+    }
+
+    private static long nowMillis() {
+        return FleetPositionStore.toEpochMillis(LocalDateTime.now());
+    }
+
+    private static final class BusProgress {
+
+        private SegmentTravelTimes times;
+        private int direction = -1;
+        private int trip;
+        private double lastDistance;
+        private long lastMillis;
+        private int lastStop = -1;
+        private long lastStopMillis = -1;
+        private double delaySeconds;
+
+        private volatile BusEta eta;
+        private int publishedTrip;
+
+        private void reset(SegmentTravelTimes times) {
+            this.times = times;
+            this.direction = -1;
+            this.trip++;
+            this.lastMillis = 0;
+            this.lastStop = -1;
+            this.lastStopMillis = -1;
+            this.delaySeconds = 0;
+        }
+    }
+}
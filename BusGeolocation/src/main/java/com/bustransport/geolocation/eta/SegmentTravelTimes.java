@@ -0,0 +1,111 @@
+package com.bustransport.geolocation.eta;
+
+import com.bustransport.geolocation.route.RouteGeometry;
+
+/**
+ * Rolling stop-to-stop travel times of one route, per direction and time-of-day bucket. Each
+ * cell keeps an exponentially decayed sum and weight of the observed times, blended with a
+ * prior from the segment length and the dwell time at its first stop, so a segment that has
+ * not been observed yet still gets a sensible estimate.
+ *
+ * <p>Segment {@code k} of a direction runs from its {@code k}th to its {@code k+1}th stop, in the
+ * order the direction serves them, and includes the dwell time at the first one.
+ */
+class SegmentTravelTimes {
+
+    private final RouteGeometry geometry;
+    private final int segments;
+    private final int buckets;
+    private final long bucketMillis;
+    private final double decayMillis;
+    private final double priorWeight;
+    private final double[] priorSeconds;
+
+    private final double[] sums;
+    private final double[] weights;
+    private final long[] updatedAt;
+
+    SegmentTravelTimes(RouteGeometry geometry, int bucketMinutes, double halfLifeMinutes,
+                       double priorWeight, double priorSpeedMetersPerSecond) {
+        this.geometry = geometry;
+        this.segments = Math.max(0, geometry.getStopCount() - 1);
+        this.buckets = Math.max(1, 1440 / bucketMinutes);
+        this.bucketMillis = bucketMinutes * 60_000L;
+        this.decayMillis = halfLifeMinutes * 60_000 / Math.log(2);
+        this.priorWeight = priorWeight;
+
+        this.priorSeconds = new double[2 * segments];
+        for (int direction = 0; direction < 2; direction++) {
+            for (int k = 0; k < segments; k++) {
+                int from = routeStop(direction, k);
+                int to = routeStop(direction, k + 1);
+                double meters = Math.abs(geometry.getStopDistance(to) - geometry.getStopDistance(from));
+                priorSeconds[direction * segments + k] = meters / priorSpeedMetersPerSecond
+                    + geometry.getStopDwellSeconds(from);
+            }
+        }
+        this.sums = new double[2 * segments * buckets];
+        this.weights = new double[2 * segments * buckets];
+        this.updatedAt = new long[2 * segments * buckets];
+    }
+
+    RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Index into the route's stops of the {@code k}th stop served in {@code direction}.
+     */
+    int routeStop(int direction, int k) {
+        return direction == 0 ? k : geometry.getStopCount() - 1 - k;
+    }
+
+    /**
+     * Position of the {@code k}th stop served in {@code direction}, in meters from where the
+     * direction starts.
+     */
+    double stopPosition(int direction, int k) {
+        double distance = geometry.getStopDistance(routeStop(direction, k));
+        return direction == 0 ? distance : geometry.getLength() - distance;
+    }
+
+    /**
+     * Expected seconds for segment {@code k} when entered at {@code atMillis}, with observations
+     * decayed to {@code nowMillis}.
+     */
+    synchronized double expectedSeconds(int direction, int k, long atMillis, long nowMillis) {
+        int cell = cell(direction, k, atMillis);
+        double decay = decay(cell, nowMillis);
+        return (sums[cell] * decay + priorWeight * priorSeconds[direction * segments + k])
+            / (weights[cell] * decay + priorWeight);
+    }
+
+    /**
+     * Adds an observed time for segment {@code k}, entered at {@code enteredAtMillis}.
+     * Observations far above the current estimate, such as a bus parked between two stops,
+     * are ignored.
+     *
+     * @return whether the observation was kept
+     */
+    synchronized boolean record(int direction, int k, long enteredAtMillis, double seconds, long nowMillis) {
+        if (seconds <= 0 || seconds > 5 * expectedSeconds(direction, k, enteredAtMillis, nowMillis)) {
+            return false;
+        }
+        int cell = cell(direction, k, enteredAtMillis);
+        double decay = decay(cell, nowMillis);
+        sums[cell] = sums[cell] * decay + seconds;
+        weights[cell] = weights[cell] * decay + 1;
+        updatedAt[cell] = Math.max(updatedAt[cell], nowMillis);
+        return true;
+    }
+
+    private double decay(int cell, long nowMillis) {
+        long age = nowMillis - updatedAt[cell];
+        return age <= 0 ? 1 : Math.exp(-age / decayMillis);
+    }
+
+    private int cell(int direction, int k, long atMillis) {
+        int bucket = (int) (Math.floorMod(atMillis, 86_400_000L) / bucketMillis) % buckets;
+        return (direction * segments + k) * buckets + bucket;
+    }
+}
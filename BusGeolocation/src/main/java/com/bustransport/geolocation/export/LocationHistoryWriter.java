@@ -0,0 +1,149 @@
+package com.bustransport.geolocation.export;
+
+import com.bustransport.geolocation.enums.ExportFormat;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Writes location history rows, as read by
+ * {@link com.bustransport.geolocation.repository.LocationHistoryRepository}, straight from the
+ * result set to the response, without building an entity or DTO per row.
+ */
+public abstract class LocationHistoryWriter implements Closeable {
+
+    private long rows;
+
+    public static LocationHistoryWriter create(ExportFormat format, OutputStream out, JsonFactory jsonFactory)
+            throws IOException {
+        return format == ExportFormat.CSV ? new Csv(out) : new Ndjson(out, jsonFactory);
+    }
+
+    /**
+     * Writes the current row. I/O errors, such as the client going away, are rethrown unchecked
+     * so that they abort the query.
+     */
+    public void write(ResultSet rs) throws SQLException {
+        try {
+            writeRow(rs);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rows++;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    protected abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    private static final class Ndjson extends LocationHistoryWriter {
+
+        private final JsonGenerator generator;
+
+        private Ndjson(OutputStream out, JsonFactory jsonFactory) throws IOException {
+            this.generator = jsonFactory.createGenerator(out);
+            // Rows are separated by the newline written after each one
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        protected void writeRow(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("busId", rs.getLong(1));
+            generator.writeStringField("busNumber", rs.getString(2));
+            generator.writeNumberField("routeId", rs.getLong(3));
+            writeDecimal("latitude", rs.getBigDecimal(4));
+            writeDecimal("longitude", rs.getBigDecimal(5));
+            writeDecimal("speed", rs.getBigDecimal(6));
+            writeDecimal("heading", rs.getBigDecimal(7));
+            writeDecimal("altitude", rs.getBigDecimal(8));
+            writeDecimal("accuracy", rs.getBigDecimal(9));
+            generator.writeStringField("recordedAt", rs.getObject(10, LocalDateTime.class).toString());
+            writeDecimal("odometer", rs.getBigDecimal(11));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeDecimal(String field, BigDecimal value) throws IOException {
+            generator.writeFieldName(field);
+            if (value != null) {
+                generator.writeNumber(value);
+            } else {
+                generator.writeNull();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class Csv extends LocationHistoryWriter {
+
+        private static final String HEADER =
+            "busId,busNumber,routeId,latitude,longitude,speed,heading,altitude,accuracy,recordedAt,odometer\n";
+
+        private final BufferedWriter writer;
+
+        private Csv(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            writer.write(HEADER);
+        }
+
+        @Override
+        protected void writeRow(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong(1)));
+            writer.write(',');
+            writeText(rs.getString(2));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong(3)));
+            for (int column = 4; column <= 9; column++) {
+                writer.write(',');
+                writeDecimal(rs.getBigDecimal(column));
+            }
+            writer.write(',');
+            writer.write(rs.getObject(10, LocalDateTime.class).toString());
+            writer.write(',');
+            writeDecimal(rs.getBigDecimal(11));
+            writer.write('\n');
+        }
+
+        private void writeDecimal(BigDecimal value) throws IOException {
+            if (value != null) {
+                writer.write(value.toPlainString());
+            }
+        }
+
+        private void writeText(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
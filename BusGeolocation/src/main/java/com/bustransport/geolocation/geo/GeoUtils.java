@@ -0,0 +1,57 @@
+package com.bustransport.geolocation.geo;
+
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private GeoUtils() {
+    }
+
+    /**
+     * Great-circle distance between two points in meters.
+     */
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLon = Math.sin(dLon / 2);
+        double a = sinLat * sinLat
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Initial bearing from the first point to the second, in degrees clockwise from north [0, 360).
+     */
+    public static double bearingDegrees(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLon);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    /**
+     * Parses a {@code minLon,minLat,maxLon,maxLat} bounding box into an array in that order.
+     */
+    public static double[] parseBoundingBox(String bbox) {
+        String[] parts = bbox == null ? new String[0] : bbox.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+        }
+        double[] box = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+        }
+        if (box[0] > box[2] || box[1] > box[3]
+                || box[1] < -90 || box[3] > 90 || box[0] < -180 || box[2] > 180) {
+            throw new IllegalArgumentException("Invalid bbox: " + bbox);
+        }
+        return box;
+    }
+}
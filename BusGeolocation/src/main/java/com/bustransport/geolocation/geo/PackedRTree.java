@@ -0,0 +1,132 @@
+package com.bustransport.geolocation.geo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Static R-tree over item bounding boxes, bulk-loaded with Sort-Tile-Recursive packing into flat
+ * arrays. Leaves hold the items in packed order and each level above groups up to
+ * {@value #NODE_SIZE} consecutive nodes of the level below. Immutable once built, so it can be
+ * searched concurrently without locking.
+ */
+public final class PackedRTree {
+
+    private static final int NODE_SIZE = 16;
+
+    private final int itemCount;
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    // Leaves: original item index. Internal nodes: position of the first child.
+    private final int[] refs;
+    // Internal nodes: position after the last child
+    private final int[] childEnds;
+
+    public PackedRTree(double[] itemMinX, double[] itemMinY, double[] itemMaxX, double[] itemMaxY) {
+        this.itemCount = itemMinX.length;
+
+        int total = itemCount;
+        for (int levelSize = itemCount; levelSize > 1; ) {
+            levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+            total += levelSize;
+        }
+        this.minX = new double[total];
+        this.minY = new double[total];
+        this.maxX = new double[total];
+        this.maxY = new double[total];
+        this.refs = new int[total];
+        this.childEnds = new int[total];
+
+        int[] order = strOrder(itemMinX, itemMinY, itemMaxX, itemMaxY);
+        for (int pos = 0; pos < itemCount; pos++) {
+            int item = order[pos];
+            minX[pos] = itemMinX[item];
+            minY[pos] = itemMinY[item];
+            maxX[pos] = itemMaxX[item];
+            maxY[pos] = itemMaxY[item];
+            refs[pos] = item;
+        }
+
+        int pos = itemCount;
+        int levelStart = 0;
+        int levelEnd = itemCount;
+        while (levelEnd - levelStart > 1) {
+            for (int child = levelStart; child < levelEnd; child += NODE_SIZE) {
+                int end = Math.min(child + NODE_SIZE, levelEnd);
+                minX[pos] = Double.POSITIVE_INFINITY;
+                minY[pos] = Double.POSITIVE_INFINITY;
+                maxX[pos] = Double.NEGATIVE_INFINITY;
+                maxY[pos] = Double.NEGATIVE_INFINITY;
+                for (int c = child; c < end; c++) {
+                    minX[pos] = Math.min(minX[pos], minX[c]);
+                    minY[pos] = Math.min(minY[pos], minY[c]);
+                    maxX[pos] = Math.max(maxX[pos], maxX[c]);
+                    maxY[pos] = Math.max(maxY[pos], maxY[c]);
+                }
+                refs[pos] = child;
+                childEnds[pos] = end;
+                pos++;
+            }
+            levelStart = levelEnd;
+            levelEnd = pos;
+        }
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * Calls {@code visitor} with the index of every item whose box contains the point.
+     */
+    public void search(double x, double y, IntConsumer visitor) {
+        if (itemCount == 0) {
+            return;
+        }
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = refs.length - 1;
+
+        while (top > 0) {
+            int node = stack[--top];
+            if (x < minX[node] || x > maxX[node] || y < minY[node] || y > maxY[node]) {
+                continue;
+            }
+            if (node < itemCount) {
+                visitor.accept(refs[node]);
+                continue;
+            }
+            for (int child = refs[node]; child < childEnds[node]; child++) {
+                if (top == stack.length) {
+                    stack = Arrays.copyOf(stack, top * 2);
+                }
+                stack[top++] = child;
+            }
+        }
+    }
+
+    /**
+     * Sort-Tile-Recursive order: items sorted by x into vertical slices of roughly equal size,
+     * then by y within each slice, so that consecutive runs of items form compact leaves.
+     */
+    private static int[] strOrder(double[] minXs, double[] minYs, double[] maxXs, double[] maxYs) {
+        int n = minXs.length;
+        if (n == 0) {
+            return new int[0];
+        }
+        Integer[] order = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingDouble(i -> minXs[i] + maxXs[i]));
+
+        int leaves = (n + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceCount = (int) Math.ceil(Math.sqrt(leaves));
+        int sliceSize = Math.max(1, (leaves + sliceCount - 1) / sliceCount * NODE_SIZE);
+        for (int start = 0; start < n; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, n),
+                Comparator.comparingDouble(i -> minYs[i] + maxYs[i]));
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,63 @@
+package com.bustransport.geolocation.geo;
+
+import java.util.Arrays;
+
+/**
+ * Decoder for the encoded polyline format (precision 1e-5) used for {@code Route.polyline}.
+ */
+public final class PolylineCodec {
+
+    private static final double PRECISION = 1e5;
+
+    private PolylineCodec() {
+    }
+
+    /**
+     * @return coordinates interleaved as {@code lat0, lon0, lat1, lon1, ...}
+     */
+    public static double[] decode(String encoded) {
+        // Every value takes at least one character
+        double[] coordinates = new double[encoded.length()];
+        int count = 0;
+        long latitude = 0;
+        long longitude = 0;
+
+        Reader reader = new Reader(encoded);
+        while (reader.hasMore()) {
+            latitude += reader.readValue();
+            longitude += reader.readValue();
+            coordinates[count++] = latitude / PRECISION;
+            coordinates[count++] = longitude / PRECISION;
+        }
+        return Arrays.copyOf(coordinates, count);
+    }
+
+    private static final class Reader {
+
+        private final String encoded;
+        private int position;
+
+        private Reader(String encoded) {
+            this.encoded = encoded;
+        }
+
+        private boolean hasMore() {
+            return position < encoded.length();
+        }
+
+        private long readValue() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (position >= encoded.length()) {
+                    throw new IllegalArgumentException("Truncated polyline");
+                }
+                b = encoded.charAt(position++) - 63;
+                value |= (long) (b & 0x1F) << shift;
+                shift += 5;
+            } while (b >= 0x20);
+            return (value & 1) != 0 ? ~(value >> 1) : value >> 1;
+        }
+    }
+}
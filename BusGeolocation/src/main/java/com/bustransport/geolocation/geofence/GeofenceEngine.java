@@ -0,0 +1,211 @@
+package com.bustransport.geolocation.geofence;
+
+import com.bustransport.geolocation.enums.AlertType;
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.geo.PackedRTree;
+import com.bustransport.geolocation.repository.GeofenceRepository;
+import com.bustransport.geolocation.service.AlertService;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates every accepted fix against the active geofences. Candidate fences come from a
+ * {@link PackedRTree} over their bounding boxes and are confirmed with a point-in-polygon test.
+ * Each bus's current visits are kept so that enter, exit and dwell events fire only on
+ * transitions; the first fix seen for a bus only establishes where it is.
+ */
+@Component
+@Slf4j
+public class GeofenceEngine implements PositionUpdateListener {
+
+    private final GeofenceRepository geofenceRepository;
+    private final AlertService alertService;
+    private final Map<Long, BusPresence> presences = new ConcurrentHashMap<>();
+    private final AtomicInteger fenceCount = new AtomicInteger();
+    private final MeterRegistry meterRegistry;
+
+    private volatile FenceSet fences = new FenceSet(List.of());
+
+    public GeofenceEngine(FleetPositionStore positionStore,
+                          GeofenceRepository geofenceRepository,
+                          AlertService alertService,
+                          MeterRegistry meterRegistry) {
+        this.geofenceRepository = geofenceRepository;
+        this.alertService = alertService;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge("geofence.active", fenceCount);
+        positionStore.addListener(this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reload();
+    }
+
+    /**
+     * Rebuilds the index from the active geofences. Visits of fences that were removed are
+     * dropped without an exit event.
+     */
+    public void reload() {
+        List<GeofencePolygon> polygons = geofenceRepository.findByActiveTrue().stream()
+            .map(GeofencePolygon::new)
+            .toList();
+        fences = new FenceSet(polygons);
+        fenceCount.set(polygons.size());
+        log.info("Geofence index built with {} active geofences", polygons.size());
+    }
+
+    public Set<Long> getGeofencesContaining(long busId) {
+        BusPresence presence = presences.get(busId);
+        if (presence == null) {
+            return Set.of();
+        }
+        synchronized (presence) {
+            return Set.copyOf(presence.visits.keySet());
+        }
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        if (source != PositionSource.LIVE) {
+            return;
+        }
+        FenceSet current = fences;
+        List<GeofencePolygon> inside = current.containing(latitude, longitude);
+        List<FenceEvent> events = new ArrayList<>(0);
+
+        BusPresence presence = presences.computeIfAbsent(busId, id -> new BusPresence());
+        synchronized (presence) {
+            boolean baseline = !presence.seen;
+            presence.seen = true;
+
+            Iterator<Map.Entry<Long, Visit>> visits = presence.visits.entrySet().iterator();
+            while (visits.hasNext()) {
+                Map.Entry<Long, Visit> entry = visits.next();
+                GeofencePolygon fence = current.byId.get(entry.getKey());
+                if (fence == null) {
+                    visits.remove();
+                } else if (!inside.contains(fence)) {
+                    visits.remove();
+                    if (fence.isAlertOnExit()) {
+                        events.add(new FenceEvent(fence, AlertType.GEOFENCE_EXIT));
+                    }
+                }
+            }
+
+            for (GeofencePolygon fence : inside) {
+                Visit visit = presence.visits.get(fence.getId());
+                if (visit == null) {
+                    visit = new Visit(recordedAtMillis);
+                    presence.visits.put(fence.getId(), visit);
+                    if (!baseline && fence.isAlertOnEnter()) {
+                        events.add(new FenceEvent(fence, AlertType.GEOFENCE_ENTER));
+                    }
+                }
+                if (fence.hasDwellRule() && !visit.dwellRaised
+                        && recordedAtMillis - visit.enteredAt >= fence.getDwellMillis()) {
+                    visit.dwellRaised = true;
+                    events.add(new FenceEvent(fence, AlertType.GEOFENCE_DWELL));
+                }
+            }
+        }
+
+        for (FenceEvent event : events) {
+            raise(busId, busNumber, latitude, longitude, event);
+        }
+    }
+
+    private void raise(long busId, String busNumber, double latitude, double longitude, FenceEvent event) {
+        GeofencePolygon fence = event.fence();
+        String description = switch (event.type()) {
+            case GEOFENCE_ENTER -> String.format("Bus %s entered %s", busNumber, fence.getName());
+            case GEOFENCE_EXIT -> String.format("Bus %s left %s", busNumber, fence.getName());
+            default -> String.format("Bus %s has been in %s for over %d s",
+                busNumber, fence.getName(), fence.getDwellMillis() / 1000);
+        };
+        meterRegistry.counter("geofence.events", "type", event.type().name()).increment();
+        try {
+            alertService.recordAlert(busId,
+                BigDecimal.valueOf(latitude).setScale(7, RoundingMode.HALF_UP),
+                BigDecimal.valueOf(longitude).setScale(7, RoundingMode.HALF_UP),
+                event.type(), fence.getSeverity(), description);
+        } catch (Exception e) {
+            log.error("Error raising {} alert for bus {}", event.type(), busId, e);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the active fences and their R-tree, swapped as a whole on reload.
+     */
+    private static final class FenceSet {
+
+        private final GeofencePolygon[] polygons;
+        private final Map<Long, GeofencePolygon> byId = new HashMap<>();
+        private final PackedRTree tree;
+
+        private FenceSet(List<GeofencePolygon> polygons) {
+            this.polygons = polygons.toArray(new GeofencePolygon[0]);
+            int n = this.polygons.length;
+            double[] minX = new double[n];
+            double[] minY = new double[n];
+            double[] maxX = new double[n];
+            double[] maxY = new double[n];
+            for (int i = 0; i < n; i++) {
+                GeofencePolygon polygon = this.polygons[i];
+                byId.put(polygon.getId(), polygon);
+                minX[i] = polygon.getMinLongitude();
+                minY[i] = polygon.getMinLatitude();
+                maxX[i] = polygon.getMaxLongitude();
+                maxY[i] = polygon.getMaxLatitude();
+            }
+            this.tree = new PackedRTree(minX, minY, maxX, maxY);
+        }
+
+        private List<GeofencePolygon> containing(double latitude, double longitude) {
+            List<GeofencePolygon> inside = new ArrayList<>(2);
+            tree.search(longitude, latitude, i -> {
+                if (polygons[i].contains(latitude, longitude)) {
+                    inside.add(polygons[i]);
+                }
+            });
+            return inside;
+        }
+    }
+
+    private static final class BusPresence {
+
+        private final Map<Long, Visit> visits = new HashMap<>(4);
+        private boolean seen;
+    }
+
+    private static final class Visit {
+
+        private final long enteredAt;
+        private boolean dwellRaised;
+
+        private Visit(long enteredAt) {
+            this.enteredAt = enteredAt;
+        }
+    }
+
+    private record FenceEvent(GeofencePolygon fence, AlertType type) {
+    }
+}
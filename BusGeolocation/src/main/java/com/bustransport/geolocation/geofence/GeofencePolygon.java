@@ -0,0 +1,74 @@
+package com.bustransport.geolocation.geofence;
+
+import com.bustransport.geolocation.entity.Geofence;
+import com.bustransport.geolocation.enums.AlertSeverity;
+import lombok.Getter;
+
+/**
+ * Read-only copy of an active {@link Geofence} with its vertices in primitive arrays.
+ */
+@Getter
+class GeofencePolygon {
+
+    private final long id;
+    private final String name;
+    private final boolean alertOnEnter;
+    private final boolean alertOnExit;
+    private final long dwellMillis;
+    private final AlertSeverity severity;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    GeofencePolygon(Geofence geofence) {
+        this.id = geofence.getId();
+        this.name = geofence.getName();
+        this.alertOnEnter = Boolean.TRUE.equals(geofence.getAlertOnEnter());
+        this.alertOnExit = Boolean.TRUE.equals(geofence.getAlertOnExit());
+        this.dwellMillis = geofence.getDwellSeconds() != null ? geofence.getDwellSeconds() * 1000L : 0;
+        this.severity = geofence.getSeverity();
+
+        String[] vertices = geofence.getPolygon().split(";");
+        this.latitudes = new double[vertices.length];
+        this.longitudes = new double[vertices.length];
+        double minLat = Double.POSITIVE_INFINITY;
+        double minLon = Double.POSITIVE_INFINITY;
+        double maxLat = Double.NEGATIVE_INFINITY;
+        double maxLon = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertices.length; i++) {
+            String[] parts = vertices[i].split(",");
+            latitudes[i] = Double.parseDouble(parts[0]);
+            longitudes[i] = Double.parseDouble(parts[1]);
+            minLat = Math.min(minLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+        this.minLatitude = minLat;
+        this.minLongitude = minLon;
+        this.maxLatitude = maxLat;
+        this.maxLongitude = maxLon;
+    }
+
+    boolean hasDwellRule() {
+        return dwellMillis > 0;
+    }
+
+    /**
+     * Even-odd ray casting; the polygon is closed implicitly.
+     */
+    boolean contains(double latitude, double longitude) {
+        boolean inside = false;
+        for (int i = 0, j = latitudes.length - 1; i < latitudes.length; j = i++) {
+            if ((latitudes[i] > latitude) != (latitudes[j] > latitude)
+                    && longitude < (longitudes[j] - longitudes[i]) * (latitude - latitudes[i])
+                        / (latitudes[j] - latitudes[i]) + longitudes[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,172 @@
+package com.bustransport.geolocation.heatmap;
+
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.repository.HeatmapTileRepository;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bins every fix accepted by the {@link FleetPositionStore} into a grid tile of
+ * {@code heatmap.cell-size-degrees} and a time bucket of {@code heatmap.bucket-minutes}, keeping
+ * a count and speed sum, minimum and maximum per tile. Totals are kept in memory and added to
+ * {@code heatmap_tiles} every {@code heatmap.flush-interval-seconds}, so heatmap queries read a
+ * few rollup rows per tile instead of raw history, at the cost of lagging by up to one flush.
+ * Only live fixes are counted: replayed history is already in the rollups, and the upsert would
+ * add it again, stamped with the replay time.
+ */
+@Component
+@Slf4j
+public class HeatmapAggregator implements PositionUpdateListener, SmartLifecycle {
+
+    private final HeatmapTileRepository tileRepository;
+    private final boolean enabled;
+    private final double cellSizeDegrees;
+    private final long bucketMillis;
+    private final int retentionDays;
+    private final Counter fixesCounter;
+    private final Counter flushedTilesCounter;
+    private final Timer flushTimer;
+
+    private final Object pendingLock = new Object();
+    private Map<TileKey, HeatmapTile> pending = new HashMap<>();
+
+    private volatile boolean running;
+
+    public HeatmapAggregator(FleetPositionStore positionStore,
+                             HeatmapTileRepository tileRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${heatmap.enabled:true}") boolean enabled,
+                             @Value("${heatmap.cell-size-degrees:0.005}") double cellSizeDegrees,
+                             @Value("${heatmap.bucket-minutes:60}") int bucketMinutes,
+                             @Value("${heatmap.retention-days:400}") int retentionDays) {
+        if (bucketMinutes <= 0 || 60 % bucketMinutes != 0) {
+            // Buckets must not span hours, so that they can be grouped by hour of day
+            throw new IllegalArgumentException("heatmap.bucket-minutes must divide an hour, got " + bucketMinutes);
+        }
+        this.tileRepository = tileRepository;
+        this.enabled = enabled;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.bucketMillis = TimeUnit.MINUTES.toMillis(bucketMinutes);
+        this.retentionDays = retentionDays;
+        this.fixesCounter = meterRegistry.counter("heatmap.fixes");
+        this.flushedTilesCounter = meterRegistry.counter("heatmap.flush.tiles");
+        this.flushTimer = meterRegistry.timer("heatmap.flush");
+        meterRegistry.gauge("heatmap.pending.tiles", this, HeatmapAggregator::pendingTiles);
+        positionStore.addListener(this);
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        if (!enabled || source != PositionSource.LIVE) {
+            return;
+        }
+        TileKey key = new TileKey(Math.floorDiv(recordedAtMillis, bucketMillis) * bucketMillis,
+            cellIndex(latitude), cellIndex(longitude));
+        synchronized (pendingLock) {
+            HeatmapTile tile = pending.get(key);
+            if (tile == null) {
+                tile = new HeatmapTile(key.bucketStartMillis(), key.row(), key.column());
+                pending.put(key, tile);
+            }
+            tile.add(speed);
+        }
+        fixesCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${heatmap.flush-interval-seconds:60}000")
+    public void flush() {
+        Map<TileKey, HeatmapTile> tiles;
+        synchronized (pendingLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            tiles = pending;
+            pending = new HashMap<>();
+        }
+
+        long start = System.nanoTime();
+        try {
+            tileRepository.upsertAll(new ArrayList<>(tiles.values()));
+            flushedTilesCounter.increment(tiles.size());
+        } catch (Exception e) {
+            log.error("Error flushing {} heatmap tiles, keeping them for the next flush", tiles.size(), e);
+            synchronized (pendingLock) {
+                tiles.forEach((key, tile) -> pending.merge(key, tile, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                }));
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Scheduled(cron = "${heatmap.retention-cron:0 45 0 * * *}")
+    public void purge() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        try {
+            int deleted = tileRepository.deleteBefore(LocalDateTime.now().minusDays(retentionDays));
+            log.info("Purged {} heatmap tiles older than {} days", deleted, retentionDays);
+        } catch (Exception e) {
+            log.error("Error purging heatmap tiles", e);
+        }
+    }
+
+    public int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    public double getCellSizeDegrees() {
+        return cellSizeDegrees;
+    }
+
+    private int pendingTiles() {
+        synchronized (pendingLock) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        // Keep what has been aggregated since the last scheduled flush
+        running = false;
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop after the write-behind pipeline, so the fixes it drains on shutdown are still counted
+        return DEFAULT_PHASE - 6144;
+    }
+
+    private record TileKey(long bucketStartMillis, int row, int column) {
+    }
+}
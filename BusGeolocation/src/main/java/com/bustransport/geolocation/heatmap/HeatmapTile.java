@@ -0,0 +1,47 @@
+package com.bustransport.geolocation.heatmap;
+
+import lombok.Getter;
+
+/**
+ * Running totals of the fixes that fell into one grid tile during one time bucket. Speed
+ * statistics only cover fixes that reported a speed.
+ */
+@Getter
+public class HeatmapTile {
+
+    private final long bucketStartMillis;
+    private final int row;
+    private final int column;
+    private int fixCount;
+    private int speedCount;
+    private double speedSum;
+    private double speedMin = Double.NaN;
+    private double speedMax = Double.NaN;
+
+    HeatmapTile(long bucketStartMillis, int row, int column) {
+        this.bucketStartMillis = bucketStartMillis;
+        this.row = row;
+        this.column = column;
+    }
+
+    void add(double speed) {
+        fixCount++;
+        if (Double.isNaN(speed)) {
+            return;
+        }
+        speedCount++;
+        speedSum += speed;
+        speedMin = Double.isNaN(speedMin) ? speed : Math.min(speedMin, speed);
+        speedMax = Double.isNaN(speedMax) ? speed : Math.max(speedMax, speed);
+    }
+
+    void merge(HeatmapTile other) {
+        fixCount += other.fixCount;
+        speedCount += other.speedCount;
+        speedSum += other.speedSum;
+        if (!Double.isNaN(other.speedMin)) {
+            speedMin = Double.isNaN(speedMin) ? other.speedMin : Math.min(speedMin, other.speedMin);
+            speedMax = Double.isNaN(speedMax) ? other.speedMax : Math.max(speedMax, other.speedMax);
+        }
+    }
+}
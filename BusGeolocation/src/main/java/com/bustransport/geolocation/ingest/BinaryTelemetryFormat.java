@@ -0,0 +1,49 @@
+package com.bustransport.geolocation.ingest;
+
+/**
+ * Fixed layout of one binary telemetry record, {@value #RECORD_SIZE} bytes, big-endian. A UDP
+ * datagram carries one or more records back to back.
+ *
+ * <pre>
+ * offset size field
+ *      0    1 version, {@value #VERSION}
+ *      1    1 flags: 0x01 altitude, 0x02 accuracy, 0x04 odometer present
+ *      2   24 device id, ASCII, padded with NUL bytes
+ *     26    8 timestamp, epoch milliseconds (UTC)
+ *     34    4 latitude, degrees x 1e7
+ *     38    4 longitude, degrees x 1e7
+ *     42    2 speed, km/h x 100, unsigned
+ *     44    2 heading, degrees x 100, unsigned
+ *     46    4 altitude, centimeters
+ *     50    2 accuracy, centimeters, unsigned
+ *     52    4 odometer, meters, unsigned
+ * </pre>
+ */
+public final class BinaryTelemetryFormat {
+
+    public static final int RECORD_SIZE = 56;
+    public static final int VERSION = 1;
+
+    public static final int FLAG_ALTITUDE = 0x01;
+    public static final int FLAG_ACCURACY = 0x02;
+    public static final int FLAG_ODOMETER = 0x04;
+
+    public static final int DEVICE_ID_LENGTH = 24;
+
+    static final int VERSION_OFFSET = 0;
+    static final int FLAGS_OFFSET = 1;
+    static final int DEVICE_ID_OFFSET = 2;
+    static final int TIMESTAMP_OFFSET = 26;
+    static final int LATITUDE_OFFSET = 34;
+    static final int LONGITUDE_OFFSET = 38;
+    static final int SPEED_OFFSET = 42;
+    static final int HEADING_OFFSET = 44;
+    static final int ALTITUDE_OFFSET = 46;
+    static final int ACCURACY_OFFSET = 50;
+    static final int ODOMETER_OFFSET = 52;
+
+    static final double COORDINATE_SCALE = 1e7;
+
+    private BinaryTelemetryFormat() {
+    }
+}
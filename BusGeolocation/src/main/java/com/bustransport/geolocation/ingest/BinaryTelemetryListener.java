@@ -0,0 +1,282 @@
+package com.bustransport.geolocation.ingest;
+
+import com.bustransport.geolocation.enums.IngestStatus;
+import com.bustransport.geolocation.store.DeviceBinding;
+import com.bustransport.geolocation.store.DeviceRegistry;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.TelemetryDeduplicator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import static com.bustransport.geolocation.ingest.BinaryTelemetryFormat.*;
+
+/**
+ * Receives {@link BinaryTelemetryFormat} records over UDP and offers them to the
+ * {@link WriteBehindIngestPipeline}, after the same device lookup and deduplication as the REST
+ * ingest path. One thread reads into a reused direct buffer and decodes records in place; device
+ * ids are matched as raw bytes against a cache, so a record from a known device allocates
+ * nothing. Disabled unless {@code ingest.binary.enabled} is set.
+ */
+@Component
+@Slf4j
+public class BinaryTelemetryListener implements SmartLifecycle {
+
+    private static final int MAX_DATAGRAM_SIZE = 65_507;
+    private static final long UNKNOWN_DEVICE_RETRY_MILLIS = 60_000;
+
+    private final WriteBehindIngestPipeline pipeline;
+    private final TelemetryDeduplicator deduplicator;
+    private final DeviceRegistry deviceRegistry;
+    private final boolean enabled;
+    private final int port;
+    private final int receiveBufferBytes;
+    private final DeviceIdCache devices;
+
+    private final Counter acceptedCounter;
+    private final Counter duplicateCounter;
+    private final Counter rejectedCounter;
+    private final Counter invalidCounter;
+    private final Counter unknownDeviceCounter;
+
+    private volatile boolean running;
+    private DatagramChannel channel;
+    private Thread receiver;
+
+    public BinaryTelemetryListener(WriteBehindIngestPipeline pipeline,
+                                   TelemetryDeduplicator deduplicator,
+                                   DeviceRegistry deviceRegistry,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${ingest.binary.enabled:false}") boolean enabled,
+                                   @Value("${ingest.binary.port:5600}") int port,
+                                   @Value("${ingest.binary.receive-buffer-bytes:4194304}") int receiveBufferBytes,
+                                   @Value("${ingest.binary.device-cache-size:4096}") int deviceCacheSize) {
+        this.pipeline = pipeline;
+        this.deduplicator = deduplicator;
+        this.deviceRegistry = deviceRegistry;
+        this.enabled = enabled;
+        this.port = port;
+        this.receiveBufferBytes = receiveBufferBytes;
+        this.devices = new DeviceIdCache(deviceCacheSize);
+        this.acceptedCounter = meterRegistry.counter("telemetry.binary.records", "outcome", "accepted");
+        this.duplicateCounter = meterRegistry.counter("telemetry.binary.records", "outcome", "duplicate");
+        this.rejectedCounter = meterRegistry.counter("telemetry.binary.records", "outcome", "rejected");
+        this.invalidCounter = meterRegistry.counter("telemetry.binary.records", "outcome", "invalid");
+        this.unknownDeviceCounter = meterRegistry.counter("telemetry.binary.records", "outcome", "unknown_device");
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferBytes);
+            channel.bind(new InetSocketAddress(port));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not bind binary telemetry listener to UDP port " + port, e);
+        }
+        running = true;
+        receiver = new Thread(this::receiveLoop, "telemetry-udp");
+        receiver.setDaemon(true);
+        receiver.start();
+        log.info("Binary telemetry listener on UDP port {}", port);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            channel.close();
+            receiver.join(5000);
+        } catch (IOException e) {
+            log.warn("Error closing binary telemetry listener", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Binary telemetry listener stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Start after and stop before the write-behind pipeline it feeds
+        return DEFAULT_PHASE - 2048;
+    }
+
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE).order(ByteOrder.BIG_ENDIAN);
+        while (running) {
+            buffer.clear();
+            try {
+                channel.receive(buffer);
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IOException e) {
+                log.warn("Error receiving telemetry datagram: {}", e.getMessage());
+                continue;
+            }
+            int length = buffer.position();
+            int records = length / RECORD_SIZE;
+            if (records * RECORD_SIZE != length) {
+                invalidCounter.increment();
+            }
+            for (int i = 0; i < records; i++) {
+                handle(buffer, i * RECORD_SIZE);
+            }
+        }
+    }
+
+    private void handle(ByteBuffer buffer, int offset) {
+        if ((buffer.get(offset + VERSION_OFFSET) & 0xFF) != VERSION) {
+            invalidCounter.increment();
+            return;
+        }
+        double latitude = buffer.getInt(offset + LATITUDE_OFFSET) / COORDINATE_SCALE;
+        double longitude = buffer.getInt(offset + LONGITUDE_OFFSET) / COORDINATE_SCALE;
+        int flags = buffer.get(offset + FLAGS_OFFSET) & 0xFF;
+        double speed = (buffer.getShort(offset + SPEED_OFFSET) & 0xFFFF) / 100.0;
+        double heading = (buffer.getShort(offset + HEADING_OFFSET) & 0xFFFF) / 100.0;
+        double altitude = (flags & FLAG_ALTITUDE) != 0
+            ? buffer.getInt(offset + ALTITUDE_OFFSET) / 100.0 : Double.NaN;
+        double accuracy = (flags & FLAG_ACCURACY) != 0
+            ? (buffer.getShort(offset + ACCURACY_OFFSET) & 0xFFFF) / 100.0 : Double.NaN;
+        double odometer = (flags & FLAG_ODOMETER) != 0
+            ? (buffer.getInt(offset + ODOMETER_OFFSET) & 0xFFFFFFFFL) / 1000.0 : Double.NaN;
+        if (!WriteBehindIngestPipeline.isStorable(latitude, longitude, speed, heading, altitude, accuracy, odometer)) {
+            invalidCounter.increment();
+            return;
+        }
+
+        DeviceBinding binding = devices.resolve(buffer, offset + DEVICE_ID_OFFSET);
+        if (binding == null) {
+            unknownDeviceCounter.increment();
+            return;
+        }
+
+        long recordedAt = FleetPositionStore.fromUtcEpochMillis(buffer.getLong(offset + TIMESTAMP_OFFSET));
+        if (deduplicator.admit(binding.getBusId(), recordedAt) != IngestStatus.ACCEPTED) {
+            duplicateCounter.increment();
+            return;
+        }
+
+        IngestStatus status = pipeline.offer(binding.getBusId(), binding.getRouteId(), binding.getBusNumber(),
+            latitude, longitude, speed, heading, altitude, accuracy, odometer, recordedAt);
+        if (status == IngestStatus.REJECTED) {
+            // UDP has no retry, but the device may resend on its own
+            deduplicator.forget(binding.getBusId(), recordedAt);
+            rejectedCounter.increment();
+        } else {
+            acceptedCounter.increment();
+        }
+    }
+
+    /**
+     * Open-addressed cache from raw device id bytes to the device id string. Only the receiver
+     * thread uses it. Bindings are looked up in the {@link DeviceRegistry} on every record, so
+     * a bus re-assigned to another device is picked up at once; unknown devices are looked up
+     * in the database at most once per {@value #UNKNOWN_DEVICE_RETRY_MILLIS} ms.
+     */
+    private final class DeviceIdCache {
+
+        private static final int MAX_PROBES = 8;
+
+        private final int mask;
+        private final byte[] keys;
+        private final int[] hashes;
+        private final String[] deviceIds;
+        private final long[] retryAt;
+        private final byte[] scratch = new byte[DEVICE_ID_LENGTH];
+
+        private DeviceIdCache(int requestedSize) {
+            int size = Integer.highestOneBit(Math.max(16, requestedSize - 1)) << 1;
+            this.mask = size - 1;
+            this.keys = new byte[size * DEVICE_ID_LENGTH];
+            this.hashes = new int[size];
+            this.deviceIds = new String[size];
+            this.retryAt = new long[size];
+        }
+
+        private DeviceBinding resolve(ByteBuffer buffer, int offset) {
+            int hash = hash(buffer, offset);
+            int home = hash & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                int slot = (home + probe) & mask;
+                if (deviceIds[slot] == null) {
+                    return load(slot, hash, buffer, offset);
+                }
+                if (hashes[slot] == hash && matches(slot, buffer, offset)) {
+                    return lookup(slot);
+                }
+            }
+            return load(home, hash, buffer, offset);
+        }
+
+        private DeviceBinding lookup(int slot) {
+            DeviceBinding binding = deviceRegistry.get(deviceIds[slot]);
+            if (binding != null) {
+                return binding;
+            }
+            long now = System.currentTimeMillis();
+            if (now < retryAt[slot]) {
+                return null;
+            }
+            retryAt[slot] = now + UNKNOWN_DEVICE_RETRY_MILLIS;
+            return deviceRegistry.resolve(deviceIds[slot]).orElse(null);
+        }
+
+        private DeviceBinding load(int slot, int hash, ByteBuffer buffer, int offset) {
+            int length = 0;
+            while (length < DEVICE_ID_LENGTH && buffer.get(offset + length) != 0) {
+                length++;
+            }
+            if (length == 0) {
+                return null;
+            }
+            buffer.get(offset, scratch, 0, DEVICE_ID_LENGTH);
+            System.arraycopy(scratch, 0, keys, slot * DEVICE_ID_LENGTH, DEVICE_ID_LENGTH);
+            hashes[slot] = hash;
+            deviceIds[slot] = new String(scratch, 0, length, StandardCharsets.US_ASCII);
+            retryAt[slot] = 0;
+            return lookup(slot);
+        }
+
+        private boolean matches(int slot, ByteBuffer buffer, int offset) {
+            int base = slot * DEVICE_ID_LENGTH;
+            for (int i = 0; i < DEVICE_ID_LENGTH; i++) {
+                if (keys[base + i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(ByteBuffer buffer, int offset) {
+            int hash = 0x811C9DC5;
+            for (int i = 0; i < DEVICE_ID_LENGTH; i++) {
+                hash = (hash ^ (buffer.get(offset + i) & 0xFF)) * 0x01000193;
+            }
+            return hash;
+        }
+    }
+}
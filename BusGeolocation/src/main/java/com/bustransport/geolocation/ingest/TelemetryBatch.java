@@ -0,0 +1,137 @@
+package com.bustransport.geolocation.ingest;
+
+import java.time.LocalDateTime;
+
+import static com.bustransport.geolocation.store.FleetPositionStore.toLocalDateTime;
+
+/**
+ * Reusable column-oriented batch of fixes waiting to be written. Absent optional values are
+ * held as {@link Double#NaN}; {@link #getLocationId(int)} is filled in once the batch is stored.
+ */
+public class TelemetryBatch {
+
+    private final int capacity;
+    private int size;
+
+    private final long[] busIds;
+    private final long[] routeIds;
+    private final String[] busNumbers;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] speeds;
+    private final double[] headings;
+    private final double[] altitudes;
+    private final double[] accuracies;
+    private final double[] odometers;
+    private final long[] recordedAtMillis;
+    private final long[] locationIds;
+
+    public TelemetryBatch(int capacity) {
+        this.capacity = capacity;
+        this.busIds = new long[capacity];
+        this.routeIds = new long[capacity];
+        this.busNumbers = new String[capacity];
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.speeds = new double[capacity];
+        this.headings = new double[capacity];
+        this.altitudes = new double[capacity];
+        this.accuracies = new double[capacity];
+        this.odometers = new double[capacity];
+        this.recordedAtMillis = new long[capacity];
+        this.locationIds = new long[capacity];
+    }
+
+    public void add(long busId, long routeId, String busNumber,
+                    double latitude, double longitude, double speed, double heading,
+                    double altitude, double accuracy, double odometer, long recordedAt) {
+        int i = size++;
+        busIds[i] = busId;
+        routeIds[i] = routeId;
+        busNumbers[i] = busNumber;
+        latitudes[i] = latitude;
+        longitudes[i] = longitude;
+        speeds[i] = speed;
+        headings[i] = heading;
+        altitudes[i] = altitude;
+        accuracies[i] = accuracy;
+        odometers[i] = odometer;
+        recordedAtMillis[i] = recordedAt;
+        locationIds[i] = 0;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            busNumbers[i] = null;
+        }
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public long getBusId(int i) {
+        return busIds[i];
+    }
+
+    public long getRouteId(int i) {
+        return routeIds[i];
+    }
+
+    public String getBusNumber(int i) {
+        return busNumbers[i];
+    }
+
+    public double getLatitude(int i) {
+        return latitudes[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitudes[i];
+    }
+
+    public double getSpeed(int i) {
+        return speeds[i];
+    }
+
+    public double getHeading(int i) {
+        return headings[i];
+    }
+
+    public double getAltitude(int i) {
+        return altitudes[i];
+    }
+
+    public double getAccuracy(int i) {
+        return accuracies[i];
+    }
+
+    public double getOdometer(int i) {
+        return odometers[i];
+    }
+
+    public long getRecordedAtMillis(int i) {
+        return recordedAtMillis[i];
+    }
+
+    public LocalDateTime getRecordedAt(int i) {
+        return toLocalDateTime(recordedAtMillis[i]);
+    }
+
+    public long getLocationId(int i) {
+        return locationIds[i];
+    }
+
+    public void setLocationId(int i, long locationId) {
+        locationIds[i] = locationId;
+    }
+}
@@ -0,0 +1,125 @@
+package com.bustransport.geolocation.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer/multi-consumer queue of telemetry fixes. Slots are preallocated
+ * primitive columns and claimed with per-slot sequence numbers, so neither offering nor
+ * draining takes a lock or allocates.
+ */
+public class TelemetryRingBuffer {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    private final long[] busIds;
+    private final long[] routeIds;
+    private final String[] busNumbers;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] speeds;
+    private final double[] headings;
+    private final double[] altitudes;
+    private final double[] accuracies;
+    private final double[] odometers;
+    private final long[] recordedAtMillis;
+
+    public TelemetryRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.mask = capacity - 1;
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.busIds = new long[capacity];
+        this.routeIds = new long[capacity];
+        this.busNumbers = new String[capacity];
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+        this.speeds = new double[capacity];
+        this.headings = new double[capacity];
+        this.altitudes = new double[capacity];
+        this.accuracies = new double[capacity];
+        this.odometers = new double[capacity];
+        this.recordedAtMillis = new long[capacity];
+    }
+
+    /**
+     * Appends a fix. Returns {@code false} without blocking when the buffer is full.
+     * Absent optional values are passed as {@link Double#NaN}.
+     */
+    public boolean offer(long busId, long routeId, String busNumber,
+                         double latitude, double longitude, double speed, double heading,
+                         double altitude, double accuracy, double odometer, long recordedAt) {
+        long position = enqueuePosition.get();
+        int slot;
+        while (true) {
+            slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+
+        busIds[slot] = busId;
+        routeIds[slot] = routeId;
+        busNumbers[slot] = busNumber;
+        latitudes[slot] = latitude;
+        longitudes[slot] = longitude;
+        speeds[slot] = speed;
+        headings[slot] = heading;
+        altitudes[slot] = altitude;
+        accuracies[slot] = accuracy;
+        odometers[slot] = odometer;
+        recordedAtMillis[slot] = recordedAt;
+        sequences.lazySet(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves up to the batch's remaining capacity of fixes into {@code batch}.
+     *
+     * @return the number of fixes moved
+     */
+    public int drainTo(TelemetryBatch batch) {
+        int drained = 0;
+        while (!batch.isFull()) {
+            long position = dequeuePosition.get();
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference < 0) {
+                break;
+            }
+            if (difference > 0 || !dequeuePosition.compareAndSet(position, position + 1)) {
+                continue;
+            }
+
+            batch.add(busIds[slot], routeIds[slot], busNumbers[slot],
+                latitudes[slot], longitudes[slot], speeds[slot], headings[slot],
+                altitudes[slot], accuracies[slot], odometers[slot], recordedAtMillis[slot]);
+            busNumbers[slot] = null;
+            sequences.lazySet(slot, position + mask + 1);
+            drained++;
+        }
+        return drained;
+    }
+
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
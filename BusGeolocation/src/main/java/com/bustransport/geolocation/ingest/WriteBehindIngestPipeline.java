@@ -0,0 +1,271 @@
+package com.bustransport.geolocation.ingest;
+
+import com.bustransport.geolocation.enums.IngestStatus;
+import com.bustransport.geolocation.enums.OverflowPolicy;
+import com.bustransport.geolocation.repository.BusLocationBatchRepository;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Accepts fixes into a {@link TelemetryRingBuffer} and persists them from a small pool of
+ * writer threads, each flushing when its batch is full or the oldest fix has waited long enough.
+ * Fixes are range-checked before they are queued, since by the time they are written the sender
+ * has already been told they were accepted. Should a batch still be refused by the database, it
+ * is split and retried so that only the offending fixes are lost.
+ */
+@Component
+@Slf4j
+public class WriteBehindIngestPipeline implements SmartLifecycle {
+
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(64);
+
+    private final BusLocationBatchRepository batchRepository;
+    private final FleetPositionStore positionStore;
+    private final TransactionTemplate transactionTemplate;
+    private final TelemetryRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int writerThreads;
+    private final int maxBatchSize;
+    private final long maxBatchDelayNanos;
+    private final long shutdownTimeoutMillis;
+
+    private final Counter acceptedCounter;
+    private final Counter rejectedCounter;
+    private final Counter shedCounter;
+    private final Counter writtenCounter;
+    private final Counter failedCounter;
+    private final Timer flushTimer;
+
+    private final List<Thread> writers = new ArrayList<>();
+    private volatile boolean accepting;
+    private volatile boolean running;
+
+    public WriteBehindIngestPipeline(
+            BusLocationBatchRepository batchRepository,
+            FleetPositionStore positionStore,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${ingest.write-behind.capacity:65536}") int capacity,
+            @Value("${ingest.write-behind.overflow-policy:REJECT}") OverflowPolicy overflowPolicy,
+            @Value("${ingest.write-behind.writer-threads:2}") int writerThreads,
+            @Value("${ingest.write-behind.max-batch-size:500}") int maxBatchSize,
+            @Value("${ingest.write-behind.max-batch-delay-ms:200}") long maxBatchDelayMillis,
+            @Value("${ingest.write-behind.shutdown-timeout-ms:10000}") long shutdownTimeoutMillis) {
+        this.batchRepository = batchRepository;
+        this.positionStore = positionStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buffer = new TelemetryRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.writerThreads = writerThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        Gauge.builder("telemetry.writebehind.queue.depth", buffer, TelemetryRingBuffer::size)
+            .description("Fixes waiting to be written")
+            .register(meterRegistry);
+        Gauge.builder("telemetry.writebehind.queue.capacity", buffer, TelemetryRingBuffer::capacity)
+            .register(meterRegistry);
+        this.acceptedCounter = meterRegistry.counter("telemetry.writebehind.fixes", "outcome", "accepted");
+        this.rejectedCounter = meterRegistry.counter("telemetry.writebehind.fixes", "outcome", "rejected");
+        this.shedCounter = meterRegistry.counter("telemetry.writebehind.fixes", "outcome", "shed");
+        this.writtenCounter = meterRegistry.counter("telemetry.writebehind.fixes", "outcome", "written");
+        this.failedCounter = meterRegistry.counter("telemetry.writebehind.fixes", "outcome", "failed");
+        this.flushTimer = Timer.builder("telemetry.writebehind.flush")
+            .description("Time to write one batch of fixes")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether a fix fits the {@code bus_locations} columns. Absent optional values are passed as
+     * {@link Double#NaN} and always fit.
+     */
+    public static boolean isStorable(double latitude, double longitude, double speed, double heading,
+                                     double altitude, double accuracy, double odometer) {
+        return latitude >= -90 && latitude <= 90
+            && longitude >= -180 && longitude <= 180
+            && fits(speed, 0, 999.99)
+            && fits(heading, 0, 360)
+            && fits(altitude, -9999.99, 9999.99)
+            && fits(accuracy, 0, 999.99)
+            && fits(odometer, 0, 99_999_999.99);
+    }
+
+    private static boolean fits(double value, double min, double max) {
+        return Double.isNaN(value) || (value >= min && value <= max);
+    }
+
+    /**
+     * Queues a fix for writing. Absent optional values are passed as {@link Double#NaN}.
+     *
+     * @throws IllegalArgumentException if the fix is not {@link #isStorable storable}
+     */
+    public IngestStatus offer(long busId, long routeId, String busNumber,
+                              double latitude, double longitude, double speed, double heading,
+                              double altitude, double accuracy, double odometer, long recordedAt) {
+        if (!isStorable(latitude, longitude, speed, heading, altitude, accuracy, odometer)) {
+            throw new IllegalArgumentException("Fix of bus " + busId + " is out of range");
+        }
+        if (accepting && buffer.offer(busId, routeId, busNumber, latitude, longitude, speed, heading,
+                altitude, accuracy, odometer, recordedAt)) {
+            acceptedCounter.increment();
+            return IngestStatus.ACCEPTED;
+        }
+        if (accepting && overflowPolicy == OverflowPolicy.SHED) {
+            shedCounter.increment();
+            return IngestStatus.SHED;
+        }
+        rejectedCounter.increment();
+        return IngestStatus.REJECTED;
+    }
+
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        accepting = true;
+        for (int i = 0; i < writerThreads; i++) {
+            Thread writer = new Thread(this::writeLoop, "telemetry-writer-" + i);
+            writer.setDaemon(true);
+            writer.start();
+            writers.add(writer);
+        }
+        log.info("Write-behind ingest started with {} writers, buffer capacity {}", writerThreads, buffer.capacity());
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        // Wake idle writers so they drain and exit without waiting out their back-off
+        writers.forEach(LockSupport::unpark);
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Thread writer : writers) {
+            try {
+                writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writers.clear();
+        if (buffer.size() > 0) {
+            log.warn("Write-behind ingest stopped with {} fixes still queued", buffer.size());
+        } else {
+            log.info("Write-behind ingest drained and stopped");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Start before and stop after the web server so in-flight requests can still be queued
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private void writeLoop() {
+        TelemetryBatch batch = new TelemetryBatch(maxBatchSize);
+        long firstFixAt = 0;
+        long idleParkNanos = MIN_IDLE_PARK_NANOS;
+
+        while (running || buffer.size() > 0) {
+            boolean wasEmpty = batch.isEmpty();
+            int drained = buffer.drainTo(batch);
+            if (wasEmpty && drained > 0) {
+                firstFixAt = System.nanoTime();
+            }
+
+            boolean due = !batch.isEmpty()
+                && (batch.isFull() || !running || System.nanoTime() - firstFixAt >= maxBatchDelayNanos);
+            if (due) {
+                flush(batch);
+            }
+            if (drained > 0) {
+                idleParkNanos = MIN_IDLE_PARK_NANOS;
+            } else if (!due) {
+                // Back off while the ring stays empty, but not past the flush of a waiting batch
+                long park = idleParkNanos;
+                if (!batch.isEmpty()) {
+                    park = Math.min(park, Math.max(MIN_IDLE_PARK_NANOS,
+                        maxBatchDelayNanos - (System.nanoTime() - firstFixAt)));
+                }
+                LockSupport.parkNanos(park);
+                idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(TelemetryBatch batch) {
+        long start = System.nanoTime();
+        try {
+            write(batch, 0, batch.size());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes rows {@code from} to {@code to} (exclusive) in one transaction. When the database
+     * refuses the data, the rows are written again in halves, down to single rows, so one bad fix
+     * does not take the rest of the batch with it. Other failures drop the rows as they are.
+     */
+    private void write(TelemetryBatch batch, int from, int to) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batchRepository.insertAll(batch, from, to);
+                batchRepository.upsertLatest(batch, from, to);
+            });
+        } catch (DataIntegrityViolationException e) {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                write(batch, from, middle);
+                write(batch, middle, to);
+            } else {
+                failedCounter.increment();
+                log.error("Failed to write fix of bus {} recorded at {}", batch.getBusId(from),
+                    batch.getRecordedAt(from), e);
+            }
+            return;
+        } catch (Exception e) {
+            failedCounter.increment(to - from);
+            log.error("Failed to write batch of {} fixes", to - from, e);
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            positionStore.update(batch.getBusId(i), batch.getRouteId(i), batch.getBusNumber(i),
+                batch.getLocationId(i), batch.getLatitude(i), batch.getLongitude(i),
+                batch.getSpeed(i), batch.getHeading(i), batch.getAltitude(i),
+                batch.getAccuracy(i), batch.getOdometer(i), batch.getRecordedAtMillis(i));
+        }
+        writtenCounter.increment(to - from);
+    }
+}
@@ -0,0 +1,156 @@
+package com.bustransport.geolocation.partition;
+
+import com.bustransport.geolocation.enums.RetentionMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Keeps daily {@code bus_locations} partitions ahead of time and retires the ones older than the
+ * retention period. When the table was created before partitioning was introduced, retention
+ * falls back to deleting old rows in small batches.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BusLocationPartitionManager {
+
+    private static final String PARENT_TABLE = "bus_locations";
+    private static final String DEFAULT_PARTITION = "bus_locations_default";
+    private static final String PARTITION_PREFIX = "bus_locations_p";
+    private static final String ARCHIVE_SCHEMA = "bus_locations_archive";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${history.partition.enabled:true}")
+    private boolean partitioningEnabled;
+
+    @Value("${history.partition.premake-days:7}")
+    private int premakeDays;
+
+    @Value("${history.retention.days:30}")
+    private int retentionDays;
+
+    @Value("${history.retention.mode:DROP}")
+    private RetentionMode retentionMode;
+
+    @Value("${history.retention.delete-batch-size:5000}")
+    private int deleteBatchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${history.retention.cron:0 15 0 * * *}")
+    public void maintain() {
+        LocalDate today = LocalDate.now();
+        try {
+            boolean partitioned = isPartitioned();
+            if (partitioningEnabled && partitioned) {
+                createPartitions(today.minusDays(1), today.plusDays(premakeDays));
+            } else if (partitioningEnabled) {
+                log.warn("Table {} is not partitioned; history retention will delete rows in batches", PARENT_TABLE);
+            }
+
+            if (retentionDays > 0) {
+                LocalDate cutoff = today.minusDays(retentionDays);
+                if (partitioned) {
+                    retirePartitionsBefore(cutoff);
+                    purgeBefore(DEFAULT_PARTITION, cutoff);
+                } else {
+                    purgeBefore(PARENT_TABLE, cutoff);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error maintaining {} partitions", PARENT_TABLE, e);
+        }
+    }
+
+    private boolean isPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid " +
+            "WHERE c.oid = to_regclass(?))", Boolean.class, PARENT_TABLE);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    private void createPartitions(LocalDate from, LocalDate to) {
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            String partition = partitionName(day);
+            try {
+                jdbcTemplate.execute(String.format(
+                    "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                    partition, PARENT_TABLE, day, day.plusDays(1)));
+            } catch (Exception e) {
+                // Usually rows for that day already landed in the default partition
+                log.error("Could not create partition {}", partition, e);
+            }
+        }
+    }
+
+    private void retirePartitionsBefore(LocalDate cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+            "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, PARENT_TABLE);
+
+        for (String partition : partitions) {
+            LocalDate day = partitionDay(partition);
+            if (day == null || day.plusDays(1).isAfter(cutoff)) {
+                continue;
+            }
+
+            jdbcTemplate.execute(String.format("ALTER TABLE %s DETACH PARTITION %s", PARENT_TABLE, partition));
+            if (retentionMode == RetentionMode.ARCHIVE) {
+                jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+                jdbcTemplate.execute(String.format("ALTER TABLE %s SET SCHEMA %s", partition, ARCHIVE_SCHEMA));
+                log.info("Archived partition {} to schema {}", partition, ARCHIVE_SCHEMA);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped partition {}", partition);
+            }
+        }
+    }
+
+    private void purgeBefore(String table, LocalDate cutoff) {
+        String sql = String.format(
+            "DELETE FROM %s WHERE ctid IN (SELECT ctid FROM %s WHERE recorded_at < ? LIMIT ?)", table, table);
+        Timestamp cutoffTime = Timestamp.valueOf(cutoff.atStartOfDay());
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, cutoffTime, deleteBatchSize);
+            total += deleted;
+        } while (deleted == deleteBatchSize);
+
+        if (total > 0) {
+            log.info("Deleted {} rows older than {} from {}", total, cutoff, table);
+        }
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+    }
+
+    private static LocalDate partitionDay(String partition) {
+        if (!partition.startsWith(PARTITION_PREFIX)) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
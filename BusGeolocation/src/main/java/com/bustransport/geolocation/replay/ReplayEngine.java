@@ -0,0 +1,225 @@
+package com.bustransport.geolocation.replay;
+
+import com.bustransport.geolocation.dto.response.ReplayStatusDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.enums.ReplayState;
+import com.bustransport.geolocation.repository.LocationHistoryRepository;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.websocket.LocationBroadcaster;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * Re-emits the stored fixes of a past window to the listeners of the {@link FleetPositionStore}
+ * as {@link com.bustransport.geolocation.enums.PositionSource#REPLAY} fixes. They are broadcast
+ * on the replay topics of the {@link LocationBroadcaster}; the live position of each bus, the
+ * live topics, alerts, ETAs, heatmaps and trips are left untouched. Nothing is written back to
+ * {@code bus_locations}.
+ *
+ * <p>Each bus is read as its own time-ordered stream, a chunk at a time, and the streams are
+ * merged by a heap keyed on their next fix. Memory is one chunk per bus whatever the window
+ * length. A fix recorded {@code t} after the window start is emitted {@code t / speed} after the
+ * replay started and is stamped with that emission time, so that replay clients see a timeline
+ * that advances with the clock.
+ *
+ * <p>One replay runs at a time, on its own thread.
+ */
+@Component
+@Slf4j
+public class ReplayEngine implements SmartLifecycle {
+
+    private final LocationHistoryRepository historyRepository;
+    private final FleetPositionStore positionStore;
+    private final int chunkSize;
+    private final Counter emittedCounter;
+
+    private volatile Replay current;
+    private volatile boolean running;
+
+    public ReplayEngine(LocationHistoryRepository historyRepository,
+                        FleetPositionStore positionStore,
+                        MeterRegistry meterRegistry,
+                        @Value("${replay.chunk-size:256}") int chunkSize) {
+        this.historyRepository = historyRepository;
+        this.positionStore = positionStore;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.emittedCounter = meterRegistry.counter("replay.fixes");
+        Gauge.builder("replay.lag", this, engine -> {
+                Replay replay = engine.current;
+                return replay != null && replay.state == ReplayState.RUNNING ? replay.lagMillis : 0;
+            })
+            .description("How far replayed fixes are emitted behind the replay clock")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Starts replaying the fixes of the buses recorded between {@code startTime} and
+     * {@code endTime}, {@code speed} times faster than they were recorded.
+     */
+    public synchronized ReplayStatusDTO start(List<Bus> buses, LocalDateTime startTime, LocalDateTime endTime,
+                                              double speed) {
+        if (!running) {
+            throw new IllegalStateException("Replay engine is not running");
+        }
+        if (current != null && current.state == ReplayState.RUNNING) {
+            throw new IllegalStateException("A replay is already running");
+        }
+        Replay replay = new Replay(buses, startTime, endTime, speed);
+        current = replay;
+        replay.thread.start();
+        log.info("Replaying {} buses from {} to {} at {}x", buses.size(), startTime, endTime, speed);
+        return replay.toStatus();
+    }
+
+    /**
+     * Stops the running replay, if any, and returns the status of the latest one.
+     */
+    public synchronized Optional<ReplayStatusDTO> stop(boolean wait) {
+        Replay replay = current;
+        if (replay == null) {
+            return Optional.empty();
+        }
+        if (replay.state == ReplayState.RUNNING) {
+            replay.stopRequested = true;
+            replay.thread.interrupt();
+            if (wait) {
+                try {
+                    replay.thread.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return Optional.of(replay.toStatus());
+    }
+
+    public Optional<ReplayStatusDTO> getStatus() {
+        Replay replay = current;
+        return replay == null ? Optional.empty() : Optional.of(replay.toStatus());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        stop(true);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private final class Replay implements Runnable {
+
+        private final List<Bus> buses;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final double speed;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final Thread thread;
+
+        private volatile ReplayState state = ReplayState.RUNNING;
+        private volatile boolean stopRequested;
+        private volatile long emitted;
+        private volatile long replayedUpToMillis = Long.MIN_VALUE;
+        private volatile long lagMillis;
+        private volatile LocalDateTime finishedAt;
+
+        private Replay(List<Bus> buses, LocalDateTime startTime, LocalDateTime endTime, double speed) {
+            this.buses = buses;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.speed = speed;
+            this.thread = new Thread(this, "replay");
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                replay();
+                state = stopRequested ? ReplayState.STOPPED : ReplayState.COMPLETED;
+            } catch (Exception e) {
+                if (stopRequested) {
+                    state = ReplayState.STOPPED;
+                } else {
+                    log.error("Replay from {} to {} failed", startTime, endTime, e);
+                    state = ReplayState.FAILED;
+                }
+            }
+            finishedAt = LocalDateTime.now();
+            log.info("Replay {} after {} fixes", state, emitted);
+        }
+
+        private void replay() throws InterruptedException {
+            PriorityQueue<ReplayStream> heap = new PriorityQueue<>(Math.max(1, buses.size()),
+                Comparator.comparingLong(ReplayStream::getHeadMillis).thenComparingLong(ReplayStream::getBusId));
+            for (Bus bus : buses) {
+                if (stopRequested) {
+                    return;
+                }
+                ReplayStream stream = new ReplayStream(bus.getId(), bus.getRouteId(), bus.getBusNumber(),
+                    startTime, endTime, chunkSize);
+                if (stream.open(historyRepository)) {
+                    heap.add(stream);
+                }
+            }
+
+            long windowStart = FleetPositionStore.toEpochMillis(startTime);
+            // Same clock as live fixes, local wall time read as UTC, so replayed fixes compare with them
+            long clockStart = FleetPositionStore.toEpochMillis(LocalDateTime.now());
+            while (!heap.isEmpty() && !stopRequested) {
+                ReplayStream stream = heap.poll();
+                long recordedAt = stream.getHeadMillis();
+                long due = clockStart + (long) ((recordedAt - windowStart) / speed);
+                long wait = due - FleetPositionStore.toEpochMillis(LocalDateTime.now());
+                if (wait > 0) {
+                    Thread.sleep(wait);
+                }
+                lagMillis = Math.max(0, -wait);
+
+                stream.emit(positionStore, due);
+                emitted++;
+                replayedUpToMillis = recordedAt;
+                emittedCounter.increment();
+
+                if (stream.advance(historyRepository)) {
+                    heap.add(stream);
+                }
+            }
+        }
+
+        private ReplayStatusDTO toStatus() {
+            long upTo = replayedUpToMillis;
+            return ReplayStatusDTO.builder()
+                .state(state)
+                .startTime(startTime)
+                .endTime(endTime)
+                .speed(speed)
+                .buses(buses.size())
+                .fixesEmitted(emitted)
+                .replayedUpTo(upTo == Long.MIN_VALUE ? null : FleetPositionStore.toLocalDateTime(upTo))
+                .lagMillis(lagMillis)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+        }
+    }
+}
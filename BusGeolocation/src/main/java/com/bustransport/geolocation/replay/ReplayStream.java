@@ -0,0 +1,114 @@
+package com.bustransport.geolocation.replay;
+
+import com.bustransport.geolocation.repository.LocationHistoryRepository;
+import com.bustransport.geolocation.store.FleetPositionStore;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Stored fixes of one bus within the replay window, read a chunk at a time into reused column
+ * arrays. The head of the stream is the next fix to emit; the next chunk is read only once the
+ * current one has been emitted.
+ */
+class ReplayStream {
+
+    private final long busId;
+    private final long routeId;
+    private final String busNumber;
+    private final LocalDateTime endTime;
+
+    private final long[] locationIds;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] speeds;
+    private final double[] headings;
+    private final long[] recordedAtMillis;
+
+    private int size;
+    private int position;
+    private boolean exhausted;
+
+    // Keyset position of the last row read
+    private LocalDateTime lastRecordedAt;
+    private long lastLocationId;
+
+    ReplayStream(long busId, long routeId, String busNumber,
+                 LocalDateTime startTime, LocalDateTime endTime, int chunkSize) {
+        this.busId = busId;
+        this.routeId = routeId;
+        this.busNumber = busNumber;
+        this.endTime = endTime;
+        this.locationIds = new long[chunkSize];
+        this.latitudes = new double[chunkSize];
+        this.longitudes = new double[chunkSize];
+        this.speeds = new double[chunkSize];
+        this.headings = new double[chunkSize];
+        this.recordedAtMillis = new long[chunkSize];
+        this.lastRecordedAt = startTime;
+        this.lastLocationId = Long.MIN_VALUE;
+    }
+
+    /**
+     * Moves to the next fix, reading the next chunk when the current one is used up. Returns
+     * false once the bus has no more fixes in the window.
+     */
+    boolean advance(LocationHistoryRepository historyRepository) {
+        position++;
+        if (position < size) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+        size = 0;
+        position = 0;
+        historyRepository.readAfter(busId, lastRecordedAt, lastLocationId, endTime, locationIds.length, this::read);
+        exhausted = size < locationIds.length;
+        return size > 0;
+    }
+
+    /**
+     * Reads the first chunk. Returns false if the bus has no fixes in the window.
+     */
+    boolean open(LocationHistoryRepository historyRepository) {
+        position = -1;
+        return advance(historyRepository);
+    }
+
+    private void read(ResultSet rs) throws SQLException {
+        int i = size++;
+        locationIds[i] = rs.getLong(1);
+        latitudes[i] = rs.getDouble(2);
+        longitudes[i] = rs.getDouble(3);
+        speeds[i] = getDouble(rs, 4);
+        headings[i] = getDouble(rs, 5);
+        lastRecordedAt = rs.getObject(8, LocalDateTime.class);
+        recordedAtMillis[i] = FleetPositionStore.toEpochMillis(lastRecordedAt);
+        lastLocationId = locationIds[i];
+    }
+
+    private static double getDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? Double.NaN : value;
+    }
+
+    /**
+     * Hands the head fix to the position store's listeners as a replayed fix, recorded at
+     * {@code recordedAt} instead of its original time.
+     */
+    void emit(FleetPositionStore positionStore, long recordedAt) {
+        int i = position;
+        positionStore.replay(busId, routeId, busNumber,
+            latitudes[i], longitudes[i], speeds[i], headings[i], recordedAt);
+    }
+
+    long getBusId() {
+        return busId;
+    }
+
+    long getHeadMillis() {
+        return recordedAtMillis[position];
+    }
+}
@@ -0,0 +1,30 @@
+package com.bustransport.geolocation.repository;
+
+import com.bustransport.geolocation.entity.BusLatestLocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BusLatestLocationRepository extends JpaRepository<BusLatestLocation, Long> {
+    
+    @Query("SELECT ll FROM BusLatestLocation ll JOIN FETCH ll.bus")
+    List<BusLatestLocation> findAllWithBus();
+    
+    @Query("SELECT ll FROM BusLatestLocation ll JOIN FETCH ll.bus WHERE ll.busId = :busId")
+    Optional<BusLatestLocation> findByBusIdWithBus(@Param("busId") Long busId);
+    
+    @Modifying
+    @Query(value = "INSERT INTO bus_latest_location (bus_id, location_id, latitude, longitude, speed, heading, " +
+                   "altitude, accuracy, recorded_at, odometer, updated_at) " +
+                   "SELECT DISTINCT ON (bus_id) bus_id, id, latitude, longitude, speed, heading, " +
+                   "altitude, accuracy, recorded_at, odometer, now() FROM bus_locations " +
+                   "ORDER BY bus_id, recorded_at DESC, id DESC " +
+                   "ON CONFLICT (bus_id) DO NOTHING", nativeQuery = true)
+    int backfillFromHistory();
+}
@@ -0,0 +1,238 @@
+package com.bustransport.geolocation.repository;
+
+import com.bustransport.geolocation.entity.BusLocation;
+import com.bustransport.geolocation.ingest.TelemetryBatch;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-row inserts for {@link BusLocation}. The entity uses IDENTITY ids, which stops Hibernate
+ * from batching, so bulk ingest goes through a single JDBC batch instead.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BusLocationBatchRepository {
+
+    private static final String INSERT_SQL =
+        "INSERT INTO bus_locations (bus_id, latitude, longitude, speed, heading, altitude, " +
+        "accuracy, recorded_at, odometer, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, now())";
+
+    private static final String UPSERT_LATEST_SQL =
+        "INSERT INTO bus_latest_location (bus_id, location_id, latitude, longitude, speed, heading, " +
+        "altitude, accuracy, recorded_at, odometer, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, now()) " +
+        "ON CONFLICT (bus_id) DO UPDATE SET location_id = EXCLUDED.location_id, " +
+        "latitude = EXCLUDED.latitude, longitude = EXCLUDED.longitude, speed = EXCLUDED.speed, " +
+        "heading = EXCLUDED.heading, altitude = EXCLUDED.altitude, accuracy = EXCLUDED.accuracy, " +
+        "recorded_at = EXCLUDED.recorded_at, odometer = EXCLUDED.odometer, updated_at = EXCLUDED.updated_at " +
+        "WHERE bus_latest_location.recorded_at <= EXCLUDED.recorded_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts all locations in one batch and assigns the generated ids back to them.
+     */
+    public void insertAll(List<BusLocation> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    BusLocation location = locations.get(i);
+                    ps.setLong(1, location.getBus().getId());
+                    ps.setBigDecimal(2, location.getLatitude());
+                    ps.setBigDecimal(3, location.getLongitude());
+                    ps.setBigDecimal(4, orZero(location.getSpeed()));
+                    ps.setBigDecimal(5, orZero(location.getHeading()));
+                    setNullableDecimal(ps, 6, location.getAltitude());
+                    setNullableDecimal(ps, 7, location.getAccuracy());
+                    ps.setTimestamp(8, Timestamp.valueOf(location.getRecordedAt()));
+                    setNullableDecimal(ps, 9, location.getOdometer());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return locations.size();
+                }
+            },
+            keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < locations.size(); i++) {
+            locations.get(i).setId(((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Inserts every fix held in the batch and records the generated ids in it.
+     */
+    public void insertAll(TelemetryBatch batch) {
+        insertAll(batch, 0, batch.size());
+    }
+
+    /**
+     * Inserts the fixes held in rows {@code from} to {@code to} (exclusive) of the batch and
+     * records the generated ids in it.
+     */
+    public void insertAll(TelemetryBatch batch, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+            connection -> connection.prepareStatement(INSERT_SQL, new String[] {"id"}),
+            new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    int row = from + i;
+                    ps.setLong(1, batch.getBusId(row));
+                    ps.setDouble(2, batch.getLatitude(row));
+                    ps.setDouble(3, batch.getLongitude(row));
+                    ps.setDouble(4, orZero(batch.getSpeed(row)));
+                    ps.setDouble(5, orZero(batch.getHeading(row)));
+                    setNullableDouble(ps, 6, batch.getAltitude(row));
+                    setNullableDouble(ps, 7, batch.getAccuracy(row));
+                    ps.setTimestamp(8, Timestamp.valueOf(batch.getRecordedAt(row)));
+                    setNullableDouble(ps, 9, batch.getOdometer(row));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return to - from;
+                }
+            },
+            keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && from + i < to; i++) {
+            batch.setLocationId(from + i, ((Number) keys.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Moves each bus's row in {@code bus_latest_location} forward to the newest of the given,
+     * already inserted, locations. Rows are never moved back to an older fix.
+     */
+    public void upsertLatest(List<BusLocation> locations) {
+        Map<Long, BusLocation> newestByBus = new HashMap<>();
+        for (BusLocation location : locations) {
+            newestByBus.merge(location.getBus().getId(), location,
+                (current, candidate) -> candidate.getRecordedAt().isBefore(current.getRecordedAt()) ? current : candidate);
+        }
+        if (newestByBus.isEmpty()) {
+            return;
+        }
+
+        // One row per bus: a rewritten multi-row upsert may not touch the same row twice
+        List<BusLocation> rows = new ArrayList<>(newestByBus.values());
+        jdbcTemplate.batchUpdate(UPSERT_LATEST_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BusLocation location = rows.get(i);
+                ps.setLong(1, location.getBus().getId());
+                ps.setLong(2, location.getId());
+                ps.setBigDecimal(3, location.getLatitude());
+                ps.setBigDecimal(4, location.getLongitude());
+                ps.setBigDecimal(5, orZero(location.getSpeed()));
+                ps.setBigDecimal(6, orZero(location.getHeading()));
+                setNullableDecimal(ps, 7, location.getAltitude());
+                setNullableDecimal(ps, 8, location.getAccuracy());
+                ps.setTimestamp(9, Timestamp.valueOf(location.getRecordedAt()));
+                setNullableDecimal(ps, 10, location.getOdometer());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #upsertLatest(List)} for a stored {@link TelemetryBatch}.
+     */
+    public void upsertLatest(TelemetryBatch batch) {
+        upsertLatest(batch, 0, batch.size());
+    }
+
+    /**
+     * Same as {@link #upsertLatest(List)} for rows {@code from} to {@code to} (exclusive) of a
+     * stored {@link TelemetryBatch}.
+     */
+    public void upsertLatest(TelemetryBatch batch, int from, int to) {
+        Map<Long, Integer> newestByBus = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            newestByBus.merge(batch.getBusId(i), i,
+                (current, candidate) -> batch.getRecordedAtMillis(candidate) < batch.getRecordedAtMillis(current) ? current : candidate);
+        }
+        if (newestByBus.isEmpty()) {
+            return;
+        }
+
+        int[] rows = newestByBus.values().stream().mapToInt(Integer::intValue).toArray();
+        jdbcTemplate.batchUpdate(UPSERT_LATEST_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int row = rows[i];
+                ps.setLong(1, batch.getBusId(row));
+                ps.setLong(2, batch.getLocationId(row));
+                ps.setDouble(3, batch.getLatitude(row));
+                ps.setDouble(4, batch.getLongitude(row));
+                ps.setDouble(5, orZero(batch.getSpeed(row)));
+                ps.setDouble(6, orZero(batch.getHeading(row)));
+                setNullableDouble(ps, 7, batch.getAltitude(row));
+                setNullableDouble(ps, 8, batch.getAccuracy(row));
+                ps.setTimestamp(9, Timestamp.valueOf(batch.getRecordedAt(row)));
+                setNullableDouble(ps, 10, batch.getOdometer(row));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.length;
+            }
+        });
+    }
+
+    private static double orZero(double value) {
+        return Double.isNaN(value) ? 0 : value;
+    }
+
+    private static void setNullableDouble(PreparedStatement ps, int index, double value) throws SQLException {
+        if (!Double.isNaN(value)) {
+            ps.setDouble(index, value);
+        } else {
+            ps.setNull(index, Types.NUMERIC);
+        }
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static void setNullableDecimal(PreparedStatement ps, int index, BigDecimal value) throws SQLException {
+        if (value != null) {
+            ps.setBigDecimal(index, value);
+        } else {
+            ps.setNull(index, Types.NUMERIC);
+        }
+    }
+}
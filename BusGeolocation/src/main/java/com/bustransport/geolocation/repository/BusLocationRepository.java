@@ -1,14 +1,20 @@
 package com.bustransport.geolocation.repository;
 
 import com.bustransport.geolocation.entity.BusLocation;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface BusLocationRepository extends JpaRepository<BusLocation, Long> {
@@ -19,9 +25,13 @@ public interface BusLocationRepository extends JpaRepository<BusLocation, Long>
     List<BusLocation> findByBusIdAndRecordedAtBetween(
         Long busId, LocalDateTime startTime, LocalDateTime endTime);
     
-    @Query("SELECT bl FROM BusLocation bl WHERE bl.recordedAt >= :sinceTime " +
-           "AND bl.id IN (SELECT MAX(bl2.id) FROM BusLocation bl2 GROUP BY bl2.bus.id)")
-    List<BusLocation> findAllLatestLocations(@Param("sinceTime") LocalDateTime sinceTime);
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("SELECT bl FROM BusLocation bl WHERE bl.bus.id = :busId " +
+           "AND bl.recordedAt BETWEEN :startTime AND :endTime ORDER BY bl.recordedAt")
+    Stream<BusLocation> streamByBusIdAndRecordedAtBetween(
+        @Param("busId") Long busId,
+        @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime);
     
     void deleteByRecordedAtBefore(LocalDateTime cutoffTime);
 }
@@ -5,6 +5,7 @@ import com.bustransport.geolocation.enums.BusStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,8 @@ public interface BusRepository extends JpaRepository<Bus, Long> {
     
     Optional<Bus> findByDeviceId(String deviceId);
     
+    List<Bus> findByDeviceIdIn(Collection<String> deviceIds);
+    
     List<Bus> findByStatus(BusStatus status);
     
     List<Bus> findByRouteId(Long routeId);
@@ -18,6 +18,11 @@ public interface GeofenceAlertRepository extends JpaRepository<GeofenceAlert, Lo
     List<GeofenceAlert> findActiveAlerts();
     
     List<GeofenceAlert> findByBusIdAndAcknowledgedAtIsNull(Long busId);
+
+    boolean existsByBusIdAndAlertTypeAndAcknowledgedAtIsNull(Long busId, AlertType alertType);
+
+    @Query("SELECT ga.bus.id, ga.alertType FROM GeofenceAlert ga WHERE ga.acknowledgedAt IS NULL")
+    List<Object[]> findOpenAlertKeys();
     
     List<GeofenceAlert> findByBusIdAndTriggeredAtBetween(
         Long busId, LocalDateTime startTime, LocalDateTime endTime);
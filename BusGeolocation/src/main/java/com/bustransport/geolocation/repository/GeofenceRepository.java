@@ -0,0 +1,13 @@
+package com.bustransport.geolocation.repository;
+
+import com.bustransport.geolocation.entity.Geofence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface GeofenceRepository extends JpaRepository<Geofence, Long> {
+
+    List<Geofence> findByActiveTrue();
+}
@@ -0,0 +1,130 @@
+package com.bustransport.geolocation.repository;
+
+import com.bustransport.geolocation.heatmap.HeatmapTile;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Rollups of {@code heatmap_tiles}: one row per grid tile and time bucket. Flushes add to the
+ * existing row, so the same bucket can be flushed any number of times.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HeatmapTileRepository {
+
+    private static final String UPSERT_SQL =
+        "INSERT INTO heatmap_tiles (bucket_start, cell_row, cell_col, fix_count, speed_count, speed_sum, " +
+        "speed_min, speed_max) VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (bucket_start, cell_row, cell_col) DO UPDATE SET " +
+        "fix_count = heatmap_tiles.fix_count + EXCLUDED.fix_count, " +
+        "speed_count = heatmap_tiles.speed_count + EXCLUDED.speed_count, " +
+        "speed_sum = heatmap_tiles.speed_sum + EXCLUDED.speed_sum, " +
+        "speed_min = LEAST(heatmap_tiles.speed_min, EXCLUDED.speed_min), " +
+        "speed_max = GREATEST(heatmap_tiles.speed_max, EXCLUDED.speed_max)";
+
+    private static final String AGGREGATES_SQL =
+        "SUM(fix_count), SUM(speed_count), SUM(speed_sum), MIN(speed_min), MAX(speed_max) ";
+
+    private static final String RANGE_SQL =
+        "FROM heatmap_tiles WHERE bucket_start >= ? AND bucket_start < ? " +
+        "AND cell_row BETWEEN ? AND ? AND cell_col BETWEEN ? AND ? ";
+
+    private static final String HOUR_FILTER_SQL = "AND EXTRACT(HOUR FROM bucket_start)::int = ANY (?) ";
+
+    private static final String DELETE_BEFORE_SQL = "DELETE FROM heatmap_tiles WHERE bucket_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void upsertAll(List<HeatmapTile> tiles) {
+        if (tiles.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                HeatmapTile tile = tiles.get(i);
+                ps.setTimestamp(1, Timestamp.valueOf(FleetPositionStore.toLocalDateTime(tile.getBucketStartMillis())));
+                ps.setInt(2, tile.getRow());
+                ps.setInt(3, tile.getColumn());
+                ps.setInt(4, tile.getFixCount());
+                ps.setInt(5, tile.getSpeedCount());
+                ps.setDouble(6, tile.getSpeedSum());
+                setNullableFloat(ps, 7, tile.getSpeedMin());
+                setNullableFloat(ps, 8, tile.getSpeedMax());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return tiles.size();
+            }
+        });
+    }
+
+    /**
+     * Calls {@code handler} once per tile of the cell range that has data in the time range,
+     * summed over its buckets. Columns: cell_row, cell_col, fix_count, speed_count, speed_sum,
+     * speed_min, speed_max.
+     */
+    public void sumByTile(LocalDateTime startTime, LocalDateTime endTime,
+                          int minRow, int maxRow, int minColumn, int maxColumn,
+                          Collection<Integer> hoursOfDay, RowCallbackHandler handler) {
+        String sql = "SELECT cell_row, cell_col, " + AGGREGATES_SQL + RANGE_SQL
+            + (hoursOfDay.isEmpty() ? "" : HOUR_FILTER_SQL) + "GROUP BY cell_row, cell_col";
+        query(sql, startTime, endTime, minRow, maxRow, minColumn, maxColumn, hoursOfDay, handler);
+    }
+
+    /**
+     * Calls {@code handler} once per hour of day that has data in the ranges, in hour order.
+     * Columns: hour, fix_count, speed_count, speed_sum, speed_min, speed_max.
+     */
+    public void sumByHourOfDay(LocalDateTime startTime, LocalDateTime endTime,
+                               int minRow, int maxRow, int minColumn, int maxColumn,
+                               RowCallbackHandler handler) {
+        String sql = "SELECT EXTRACT(HOUR FROM bucket_start)::int AS hour, " + AGGREGATES_SQL + RANGE_SQL
+            + "GROUP BY hour ORDER BY hour";
+        query(sql, startTime, endTime, minRow, maxRow, minColumn, maxColumn, List.of(), handler);
+    }
+
+    public int deleteBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_BEFORE_SQL, Timestamp.valueOf(cutoff));
+    }
+
+    private void query(String sql, LocalDateTime startTime, LocalDateTime endTime,
+                       int minRow, int maxRow, int minColumn, int maxColumn,
+                       Collection<Integer> hoursOfDay, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setTimestamp(1, Timestamp.valueOf(startTime));
+            ps.setTimestamp(2, Timestamp.valueOf(endTime));
+            ps.setInt(3, minRow);
+            ps.setInt(4, maxRow);
+            ps.setInt(5, minColumn);
+            ps.setInt(6, maxColumn);
+            if (!hoursOfDay.isEmpty()) {
+                ps.setArray(7, connection.createArrayOf("integer", new ArrayList<>(hoursOfDay).toArray()));
+            }
+            return ps;
+        }, handler);
+    }
+
+    private static void setNullableFloat(PreparedStatement ps, int index, double value) throws SQLException {
+        if (Double.isNaN(value)) {
+            ps.setNull(index, Types.REAL);
+        } else {
+            ps.setFloat(index, (float) value);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.bustransport.geolocation.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Reads location history through a server-side cursor, one fetch of {@code fetch-size} rows at a
+ * time, so a long range never has to fit in memory. PostgreSQL only uses a cursor inside a
+ * transaction, so callers must run these methods in one.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LocationHistoryRepository {
+
+    private static final String SELECT_SQL =
+        "SELECT l.bus_id, b.bus_number, b.route_id, l.latitude, l.longitude, l.speed, l.heading, " +
+        "l.altitude, l.accuracy, l.recorded_at, l.odometer " +
+        "FROM bus_locations l JOIN buses b ON b.id = l.bus_id ";
+
+    private static final String ORDER_SQL = " ORDER BY l.bus_id, l.recorded_at";
+
+    private static final String BY_BUSES_SQL = SELECT_SQL +
+        "WHERE l.bus_id = ANY (?) AND l.recorded_at BETWEEN ? AND ?" + ORDER_SQL;
+
+    private static final String BY_ROUTE_SQL = SELECT_SQL +
+        "WHERE b.route_id = ? AND l.recorded_at BETWEEN ? AND ?" + ORDER_SQL;
+
+    private static final String NEXT_CHUNK_SQL =
+        "SELECT l.id, l.latitude, l.longitude, l.speed, l.heading, l.altitude, l.accuracy, l.recorded_at, " +
+        "l.odometer FROM bus_locations l " +
+        "WHERE l.bus_id = ? AND (l.recorded_at, l.id) > (?, ?) AND l.recorded_at <= ? " +
+        "ORDER BY l.recorded_at, l.id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${history.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Calls {@code handler} for each fix of the buses in the range, ordered by bus and time.
+     * Columns: bus_id, bus_number, route_id, latitude, longitude, speed, heading, altitude,
+     * accuracy, recorded_at, odometer.
+     */
+    public void streamByBuses(Collection<Long> busIds, LocalDateTime startTime, LocalDateTime endTime,
+                              RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = prepare(connection.prepareStatement(BY_BUSES_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), startTime, endTime);
+            ps.setArray(1, connection.createArrayOf("bigint", busIds.toArray()));
+            return ps;
+        }, handler);
+    }
+
+    /**
+     * Same as {@link #streamByBuses} for every bus assigned to the route.
+     */
+    public void streamByRoute(long routeId, LocalDateTime startTime, LocalDateTime endTime,
+                              RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = prepare(connection.prepareStatement(BY_ROUTE_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), startTime, endTime);
+            ps.setLong(1, routeId);
+            return ps;
+        }, handler);
+    }
+
+    /**
+     * Calls {@code handler} for up to {@code limit} fixes of one bus recorded after the
+     * {@code (afterTime, afterId)} position and no later than {@code endTime}, in time order.
+     * Reading a range chunk by chunk from the last position seen keeps neither a transaction
+     * nor a cursor open between chunks. Columns: id, latitude, longitude, speed, heading,
+     * altitude, accuracy, recorded_at, odometer.
+     */
+    public void readAfter(long busId, LocalDateTime afterTime, long afterId, LocalDateTime endTime, int limit,
+                          RowCallbackHandler handler) {
+        jdbcTemplate.query(NEXT_CHUNK_SQL, ps -> {
+            ps.setLong(1, busId);
+            ps.setTimestamp(2, Timestamp.valueOf(afterTime));
+            ps.setLong(3, afterId);
+            ps.setTimestamp(4, Timestamp.valueOf(endTime));
+            ps.setInt(5, limit);
+        }, handler);
+    }
+
+    private PreparedStatement prepare(PreparedStatement ps, LocalDateTime startTime, LocalDateTime endTime)
+            throws SQLException {
+        ps.setFetchSize(fetchSize);
+        ps.setTimestamp(2, Timestamp.valueOf(startTime));
+        ps.setTimestamp(3, Timestamp.valueOf(endTime));
+        return ps;
+    }
+}
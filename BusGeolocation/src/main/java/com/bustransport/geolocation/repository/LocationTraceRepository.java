@@ -1,5 +1,6 @@
 package com.bustransport.geolocation.repository;
 
+import com.bustransport.geolocation.dto.response.LocationTraceDTO;
 import com.bustransport.geolocation.entity.LocationTrace;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -11,6 +12,12 @@ import java.util.List;
 
 @Repository
 public interface LocationTraceRepository extends JpaRepository<LocationTrace, Long> {
+
+    // Trace listings leave the encoded points in the database and only report their size
+    String SUMMARY = "SELECT new com.bustransport.geolocation.dto.response.LocationTraceDTO(" +
+                     "lt.id, lt.bus.id, lt.routeId, lt.startTime, lt.endTime, lt.totalDistance, " +
+                     "lt.totalStops, lt.averageSpeed, lt.pointCount, coalesce(octet_length(lt.encodedPoints), 0)) " +
+                     "FROM LocationTrace lt ";
     
     List<LocationTrace> findByBusIdAndStartTimeBetween(
         Long busId, LocalDateTime startTime, LocalDateTime endTime);
@@ -23,6 +30,15 @@ public interface LocationTraceRepository extends JpaRepository<LocationTrace, Lo
     List<LocationTrace> findRecentTracesByBusId(
         @Param("busId") Long busId, @Param("limit") int limit);
     
+    @Query(SUMMARY + "WHERE lt.bus.id = :busId ORDER BY lt.startTime DESC LIMIT :limit")
+    List<LocationTraceDTO> findRecentTraceSummaries(
+        @Param("busId") Long busId, @Param("limit") int limit);
+
+    @Query(SUMMARY + "WHERE lt.routeId = :routeId AND lt.startTime BETWEEN :startTime AND :endTime")
+    List<LocationTraceDTO> findTraceSummariesByRoute(
+        @Param("routeId") Long routeId, @Param("startTime") LocalDateTime startTime,
+        @Param("endTime") LocalDateTime endTime);
+    
     void deleteByEndTimeBefore(LocalDateTime cutoffTime);
 }
 
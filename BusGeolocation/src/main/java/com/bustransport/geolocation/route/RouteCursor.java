@@ -0,0 +1,130 @@
+package com.bustransport.geolocation.route;
+
+/**
+ * Position of one vehicle running a {@link RouteGeometry} out and back, stopping for the dwell
+ * time at each stop it reaches. Advancing costs O(1) amortized, as the segment is looked up
+ * from the previous one.
+ */
+public class RouteCursor {
+
+    private final RouteGeometry geometry;
+    private final double cycleLength;
+    private final int cycleStops;
+
+    private double distance;
+    private int segment;
+    private int nextStop;
+    private double dwellRemaining;
+
+    private double latitude;
+    private double longitude;
+    private double heading;
+
+    public RouteCursor(RouteGeometry geometry, double startDistance) {
+        this.geometry = geometry;
+        this.cycleLength = 2 * geometry.getLength();
+        int stops = geometry.getStopCount();
+        this.cycleStops = stops >= 2 ? 2 * stops - 2 : stops;
+        this.distance = cycleLength > 0 ? ((startDistance % cycleLength) + cycleLength) % cycleLength : 0;
+
+        for (nextStop = 0; nextStop < cycleStops; nextStop++) {
+            if (cycleStopDistance(nextStop) >= distance) {
+                break;
+            }
+        }
+        if (nextStop == cycleStops) {
+            nextStop = 0;
+        }
+        updatePosition();
+    }
+
+    public RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Moves the vehicle for {@code elapsedSeconds} at the given speed, or keeps it at a stop
+     * while its dwell time runs out.
+     *
+     * @return meters travelled
+     */
+    public double advance(double speedMetersPerSecond, double elapsedSeconds) {
+        if (dwellRemaining > 0) {
+            dwellRemaining -= elapsedSeconds;
+            return 0;
+        }
+        if (cycleLength <= 0) {
+            return 0;
+        }
+
+        double travel = speedMetersPerSecond * elapsedSeconds;
+        if (cycleStops > 0) {
+            double target = cycleStopDistance(nextStop);
+            if (target < distance) {
+                target += cycleLength;
+            }
+            if (distance + travel >= target) {
+                travel = target - distance;
+                dwellRemaining = geometry.getStopDwellSeconds(cycleStop(nextStop));
+                nextStop = (nextStop + 1) % cycleStops;
+            }
+        }
+        distance += travel;
+        if (distance >= cycleLength) {
+            distance -= cycleLength;
+        }
+        updatePosition();
+        return travel;
+    }
+
+    public boolean isDwelling() {
+        return dwellRemaining > 0;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * Distance along the route itself, which decreases on the way back.
+     */
+    public double getRouteDistance() {
+        double length = geometry.getLength();
+        return distance <= length ? distance : cycleLength - distance;
+    }
+
+    public boolean isReturning() {
+        return distance > geometry.getLength();
+    }
+
+    private void updatePosition() {
+        double routeDistance = getRouteDistance();
+        segment = geometry.locate(routeDistance, segment);
+        latitude = geometry.latitudeAt(segment, routeDistance);
+        longitude = geometry.longitudeAt(segment, routeDistance);
+        double bearing = geometry.bearingOf(segment);
+        heading = isReturning() ? (bearing + 180) % 360 : bearing;
+    }
+
+    /**
+     * Route stop served at position {@code k} of the out-and-back cycle; the terminals are
+     * served once per cycle.
+     */
+    private int cycleStop(int k) {
+        int stops = geometry.getStopCount();
+        return k < stops ? k : 2 * stops - 2 - k;
+    }
+
+    private double cycleStopDistance(int k) {
+        double stopDistance = geometry.getStopDistance(cycleStop(k));
+        return k < geometry.getStopCount() ? stopDistance : cycleLength - stopDistance;
+    }
+}
@@ -0,0 +1,185 @@
+package com.bustransport.geolocation.route;
+
+import com.bustransport.geolocation.geo.GeoUtils;
+
+/**
+ * Immutable shape of a route: its polyline with cumulative segment lengths and bearings, and
+ * its stops located by distance along the line. All distances are in meters from the first point.
+ */
+public class RouteGeometry {
+
+    private final long routeId;
+    private final String name;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cumulative;
+    private final double[] bearings;
+    private final double length;
+
+    private final long[] stopIds;
+    private final String[] stopNames;
+    private final double[] stopDistances;
+    private final int[] stopDwellSeconds;
+
+    public RouteGeometry(long routeId, String name, double[] latitudes, double[] longitudes,
+                         long[] stopIds, String[] stopNames, double[] stopLatitudes, double[] stopLongitudes,
+                         int[] stopDwellSeconds) {
+        if (latitudes.length < 2 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Route " + routeId + " needs at least two points");
+        }
+        this.routeId = routeId;
+        this.name = name;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+
+        int segments = latitudes.length - 1;
+        this.cumulative = new double[latitudes.length];
+        this.bearings = new double[segments];
+        for (int i = 0; i < segments; i++) {
+            cumulative[i + 1] = cumulative[i]
+                + GeoUtils.haversineMeters(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+            bearings[i] = GeoUtils.bearingDegrees(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+        }
+        this.length = cumulative[segments];
+
+        this.stopIds = stopIds;
+        this.stopNames = stopNames;
+        this.stopDwellSeconds = stopDwellSeconds;
+        this.stopDistances = new double[stopIds.length];
+        int fromSegment = 0;
+        for (int s = 0; s < stopIds.length; s++) {
+            // Stops are in sequence, so each one is searched for from the previous one onwards
+            fromSegment = nearestSegment(stopLatitudes[s], stopLongitudes[s], fromSegment);
+            stopDistances[s] = Math.max(s == 0 ? 0 : stopDistances[s - 1],
+                distanceAlong(fromSegment, stopLatitudes[s], stopLongitudes[s]));
+        }
+    }
+
+    public long getRouteId() {
+        return routeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLength() {
+        return length;
+    }
+
+    public int getSegmentCount() {
+        return bearings.length;
+    }
+
+    public int getStopCount() {
+        return stopIds.length;
+    }
+
+    public long getStopId(int stop) {
+        return stopIds[stop];
+    }
+
+    public String getStopName(int stop) {
+        return stopNames[stop];
+    }
+
+    public double getStopDistance(int stop) {
+        return stopDistances[stop];
+    }
+
+    public int getStopDwellSeconds(int stop) {
+        return stopDwellSeconds[stop];
+    }
+
+    /**
+     * Segment containing {@code distance}, found by walking from {@code hint}. Callers that move
+     * steadily along the route keep the previous result as the hint, which makes this O(1).
+     */
+    public int locate(double distance, int hint) {
+        int segment = Math.max(0, Math.min(hint, bearings.length - 1));
+        while (segment < bearings.length - 1 && distance > cumulative[segment + 1]) {
+            segment++;
+        }
+        while (segment > 0 && distance < cumulative[segment]) {
+            segment--;
+        }
+        return segment;
+    }
+
+    public double latitudeAt(int segment, double distance) {
+        return latitudes[segment] + (latitudes[segment + 1] - latitudes[segment]) * fraction(segment, distance);
+    }
+
+    public double longitudeAt(int segment, double distance) {
+        return longitudes[segment] + (longitudes[segment + 1] - longitudes[segment]) * fraction(segment, distance);
+    }
+
+    public double bearingOf(int segment) {
+        return bearings[segment];
+    }
+
+    public double getLatitude(int point) {
+        return latitudes[point];
+    }
+
+    public double getLongitude(int point) {
+        return longitudes[point];
+    }
+
+    public double getCumulativeDistance(int point) {
+        return cumulative[point];
+    }
+
+    private double fraction(int segment, double distance) {
+        double segmentLength = cumulative[segment + 1] - cumulative[segment];
+        if (segmentLength <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(1, (distance - cumulative[segment]) / segmentLength));
+    }
+
+    private int nearestSegment(double latitude, double longitude, int fromSegment) {
+        int best = fromSegment;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = fromSegment; i < bearings.length; i++) {
+            double d = offsetFromSegment(i, latitude, longitude);
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private double distanceAlong(int segment, double latitude, double longitude) {
+        return cumulative[segment] + projection(segment, latitude, longitude) * (cumulative[segment + 1] - cumulative[segment]);
+    }
+
+    /**
+     * Squared offset, in locally projected degrees, from the point to its projection on the segment.
+     */
+    private double offsetFromSegment(int segment, double latitude, double longitude) {
+        double t = projection(segment, latitude, longitude);
+        double scale = Math.cos(Math.toRadians(latitude));
+        double dx = (longitudes[segment] + (longitudes[segment + 1] - longitudes[segment]) * t - longitude) * scale;
+        double dy = latitudes[segment] + (latitudes[segment + 1] - latitudes[segment]) * t - latitude;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Position of the point's projection on the segment, clamped to [0, 1].
+     */
+    private double projection(int segment, double latitude, double longitude) {
+        double scale = Math.cos(Math.toRadians(latitude));
+        double ax = longitudes[segment] * scale;
+        double ay = latitudes[segment];
+        double bx = longitudes[segment + 1] * scale - ax;
+        double by = latitudes[segment + 1] - ay;
+        double lengthSquared = bx * bx + by * by;
+        if (lengthSquared == 0) {
+            return 0;
+        }
+        double t = ((longitude * scale - ax) * bx + (latitude - ay) * by) / lengthSquared;
+        return Math.max(0, Math.min(1, t));
+    }
+}
@@ -0,0 +1,227 @@
+package com.bustransport.geolocation.route;
+
+import com.bustransport.geolocation.dto.route.RouteDTO;
+import com.bustransport.geolocation.dto.route.RouteStopDTO;
+import com.bustransport.geolocation.geo.PolylineCodec;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route geometries by route id. Routes are preloaded from a snapshot file (a JSON array of Route
+ * service {@code RouteDTO}s) and, when {@code route-service.url} is set, routes missing from the
+ * snapshot are fetched from the Route service in the background on first use; lookups never wait
+ * for it and find nothing until the fetch completes. A route that could not be loaded is not
+ * asked for again until {@code route-service.miss-ttl-seconds} have passed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RouteGeometryRegistry {
+
+    private static final double SEGMENT_INDEX_CELL_METERS = 100;
+
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+
+    private final Map<Long, RouteGeometry> geometries = new ConcurrentHashMap<>();
+    private final Map<Long, RouteSegmentIndex> segmentIndexes = new ConcurrentHashMap<>();
+    // Route id to the time a missing route may be fetched again
+    private final Map<Long, Long> missRetryAt = new ConcurrentHashMap<>();
+    private final Set<Long> fetching = ConcurrentHashMap.newKeySet();
+    private RestClient routeService;
+    private ExecutorService fetcher;
+
+    @Value("${simulation.routes.snapshot:classpath:routes/routes-snapshot.json}")
+    private String snapshotLocation;
+
+    @Value("${route-service.url:}")
+    private String routeServiceUrl;
+
+    @Value("${route-service.connect-timeout-ms:2000}")
+    private long connectTimeoutMillis;
+
+    @Value("${route-service.read-timeout-ms:5000}")
+    private long readTimeoutMillis;
+
+    @Value("${route-service.miss-ttl-seconds:300}")
+    private long missTtlSeconds;
+
+    @PostConstruct
+    public void init() {
+        if (!routeServiceUrl.isBlank()) {
+            SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+            requestFactory.setConnectTimeout(Duration.ofMillis(connectTimeoutMillis));
+            requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+            routeService = RestClient.builder()
+                .baseUrl(routeServiceUrl)
+                .requestFactory(requestFactory)
+                .build();
+            fetcher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "route-fetcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Resource snapshot = resourceLoader.getResource(snapshotLocation);
+        if (!snapshot.exists()) {
+            return;
+        }
+        try (InputStream in = snapshot.getInputStream()) {
+            List<RouteDTO> routes = objectMapper.readValue(in, new TypeReference<>() {
+            });
+            routes.forEach(this::register);
+            log.info("Loaded {} route geometries from {}", routes.size(), snapshotLocation);
+        } catch (Exception e) {
+            log.error("Could not load route snapshot {}", snapshotLocation, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (fetcher != null) {
+            fetcher.shutdownNow();
+        }
+    }
+
+    public Optional<RouteGeometry> get(long routeId) {
+        RouteGeometry geometry = geometries.get(routeId);
+        if (geometry == null) {
+            requestFetch(routeId);
+        }
+        return Optional.ofNullable(geometry);
+    }
+
+    /**
+     * Segment index over the route's current geometry, built on first use and rebuilt when the
+     * geometry is replaced.
+     */
+    public Optional<RouteSegmentIndex> getSegmentIndex(long routeId) {
+        Optional<RouteGeometry> geometry = get(routeId);
+        if (geometry.isEmpty()) {
+            return Optional.empty();
+        }
+        RouteSegmentIndex index = segmentIndexes.get(routeId);
+        if (index == null || index.getGeometry() != geometry.get()) {
+            index = segmentIndexes.compute(routeId, (id, current) -> current != null && current.getGeometry() == geometry.get()
+                ? current : new RouteSegmentIndex(geometry.get(), SEGMENT_INDEX_CELL_METERS));
+        }
+        return Optional.of(index);
+    }
+
+    public void register(RouteDTO route) {
+        RouteGeometry geometry = toGeometry(route);
+        if (geometry != null) {
+            geometries.put(route.getId(), geometry);
+            missRetryAt.remove(route.getId());
+        } else {
+            markMissing(route.getId());
+        }
+    }
+
+    private void requestFetch(long routeId) {
+        if (routeService == null) {
+            return;
+        }
+        Long retryAt = missRetryAt.get(routeId);
+        if (retryAt != null && System.currentTimeMillis() < retryAt) {
+            return;
+        }
+        if (fetching.add(routeId)) {
+            try {
+                fetcher.execute(() -> fetch(routeId));
+            } catch (RejectedExecutionException e) {
+                fetching.remove(routeId);
+            }
+        }
+    }
+
+    private void fetch(long routeId) {
+        try {
+            RouteDTO route = routeService.get()
+                .uri("/routes/{id}", routeId)
+                .retrieve()
+                .body(RouteDTO.class);
+            if (route != null) {
+                register(route);
+            } else {
+                markMissing(routeId);
+            }
+        } catch (Exception e) {
+            log.warn("Could not load route {} from the Route service: {}", routeId, e.getMessage());
+            markMissing(routeId);
+        } finally {
+            fetching.remove(routeId);
+        }
+    }
+
+    private void markMissing(long routeId) {
+        missRetryAt.put(routeId, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(missTtlSeconds));
+    }
+
+    private RouteGeometry toGeometry(RouteDTO route) {
+        List<RouteStopDTO> stops = route.getStops() == null ? List.of() : route.getStops().stream()
+            .filter(s -> s.getStop() != null && s.getStop().getLatitude() != null && s.getStop().getLongitude() != null)
+            .sorted(Comparator.comparing(RouteStopDTO::getStopSequence, Comparator.nullsLast(Comparator.naturalOrder())))
+            .toList();
+
+        long[] stopIds = new long[stops.size()];
+        String[] stopNames = new String[stops.size()];
+        double[] stopLatitudes = new double[stops.size()];
+        double[] stopLongitudes = new double[stops.size()];
+        int[] dwellSeconds = new int[stops.size()];
+        for (int i = 0; i < stops.size(); i++) {
+            RouteStopDTO stop = stops.get(i);
+            stopIds[i] = stop.getStop().getId() != null ? stop.getStop().getId() : -1;
+            stopNames[i] = stop.getStop().getName();
+            stopLatitudes[i] = stop.getStop().getLatitude().doubleValue();
+            stopLongitudes[i] = stop.getStop().getLongitude().doubleValue();
+            dwellSeconds[i] = stop.getDwellTime() != null ? stop.getDwellTime() : 30;
+        }
+
+        double[] latitudes;
+        double[] longitudes;
+        if (route.getPolyline() != null && !route.getPolyline().isBlank()) {
+            double[] coordinates = PolylineCodec.decode(route.getPolyline());
+            latitudes = new double[coordinates.length / 2];
+            longitudes = new double[coordinates.length / 2];
+            for (int i = 0; i < latitudes.length; i++) {
+                latitudes[i] = coordinates[2 * i];
+                longitudes[i] = coordinates[2 * i + 1];
+            }
+        } else {
+            // Without a polyline, buses run straight from stop to stop
+            latitudes = stopLatitudes;
+            longitudes = stopLongitudes;
+        }
+
+        if (latitudes.length < 2) {
+            log.warn("Route {} has no usable geometry", route.getId());
+            return null;
+        }
+        return new RouteGeometry(route.getId(), route.getName(), latitudes, longitudes,
+            stopIds, stopNames, stopLatitudes, stopLongitudes, dwellSeconds);
+    }
+}
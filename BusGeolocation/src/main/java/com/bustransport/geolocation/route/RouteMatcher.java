@@ -0,0 +1,137 @@
+package com.bustransport.geolocation.route;
+
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.AlertType;
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.service.AlertService;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches every accepted fix against the bus's route and raises {@link AlertType#OFF_ROUTE} once
+ * the bus has stayed further than {@code distance-meters} from it for both
+ * {@code persistence-fixes} fixes and {@code persistence-seconds}. A bus must come back onto its
+ * route before it can raise another one. The state of buses that stop reporting while off route is
+ * dropped after {@code stale-after-minutes}.
+ */
+@Component
+@Slf4j
+public class RouteMatcher implements PositionUpdateListener {
+
+    private final RouteGeometryRegistry routeGeometries;
+    private final AlertService alertService;
+    private final boolean enabled;
+    private final double distanceMeters;
+    private final int persistenceFixes;
+    private final long persistenceMillis;
+    private final long staleAfterMillis;
+    private final Counter offRouteFixes;
+
+    private final Map<Long, OffRouteState> states = new ConcurrentHashMap<>();
+
+    public RouteMatcher(FleetPositionStore positionStore,
+                        RouteGeometryRegistry routeGeometries,
+                        AlertService alertService,
+                        MeterRegistry meterRegistry,
+                        @Value("${alerts.off-route.enabled:true}") boolean enabled,
+                        @Value("${alerts.off-route.distance-meters:75}") double distanceMeters,
+                        @Value("${alerts.off-route.persistence-fixes:3}") int persistenceFixes,
+                        @Value("${alerts.off-route.persistence-seconds:20}") long persistenceSeconds,
+                        @Value("${alerts.off-route.stale-after-minutes:15}") long staleAfterMinutes) {
+        this.routeGeometries = routeGeometries;
+        this.alertService = alertService;
+        this.enabled = enabled;
+        this.distanceMeters = distanceMeters;
+        this.persistenceFixes = persistenceFixes;
+        this.persistenceMillis = persistenceSeconds * 1000;
+        this.staleAfterMillis = TimeUnit.MINUTES.toMillis(staleAfterMinutes);
+        this.offRouteFixes = meterRegistry.counter("alerts.offroute.fixes");
+        positionStore.addListener(this);
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        if (!enabled || source != PositionSource.LIVE) {
+            return;
+        }
+        Optional<RouteSegmentIndex> index = routeGeometries.getSegmentIndex(routeId);
+        if (index.isEmpty()) {
+            return;
+        }
+
+        boolean offRoute = index.get().distanceToRoute(latitude, longitude, distanceMeters) > distanceMeters;
+        if (!offRoute) {
+            states.remove(busId);
+            return;
+        }
+        offRouteFixes.increment();
+
+        OffRouteState state = states.computeIfAbsent(busId, id -> new OffRouteState(recordedAtMillis));
+        boolean raise;
+        synchronized (state) {
+            state.fixes++;
+            state.lastMillis = Math.max(state.lastMillis, recordedAtMillis);
+            raise = !state.raised
+                && state.fixes >= persistenceFixes
+                && recordedAtMillis - state.since >= persistenceMillis;
+            if (raise) {
+                state.raised = true;
+            }
+        }
+        if (raise) {
+            try {
+                alertService.raiseAlert(busId,
+                    BigDecimal.valueOf(latitude).setScale(7, RoundingMode.HALF_UP),
+                    BigDecimal.valueOf(longitude).setScale(7, RoundingMode.HALF_UP),
+                    AlertType.OFF_ROUTE, AlertSeverity.HIGH,
+                    String.format("Bus %s is more than %.0f m off route %d", busNumber, distanceMeters, routeId));
+            } catch (Exception e) {
+                log.error("Error raising off-route alert for bus {}", busId, e);
+            }
+        }
+    }
+
+    /**
+     * Forgets buses that stopped reporting while off route.
+     */
+    @Scheduled(fixedDelayString = "${alerts.off-route.sweep-interval-ms:60000}")
+    public void sweep() {
+        long cutoff = FleetPositionStore.toEpochMillis(LocalDateTime.now()) - staleAfterMillis;
+        states.forEach((busId, state) -> {
+            synchronized (state) {
+                if (state.lastMillis < cutoff) {
+                    states.remove(busId, state);
+                }
+            }
+        });
+    }
+
+    private static final class OffRouteState {
+
+        private final long since;
+        private long lastMillis;
+        private int fixes;
+        private boolean raised;
+
+        private OffRouteState(long since) {
+            this.since = since;
+            this.lastMillis = since;
+        }
+    }
+}
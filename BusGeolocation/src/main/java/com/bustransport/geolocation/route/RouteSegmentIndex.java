@@ -0,0 +1,155 @@
+package com.bustransport.geolocation.route;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Uniform grid over the segments of one {@link RouteGeometry}, in a local equirectangular
+ * projection. Each cell lists the segments whose bounding box touches it, so the nearest segment
+ * within a search radius is found by looking at a handful of cells only.
+ */
+public class RouteSegmentIndex {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private final RouteGeometry geometry;
+    private final double cellMeters;
+    private final double originLatitude;
+    private final double originLongitude;
+    private final double longitudeScale;
+    private final double[] xs;
+    private final double[] ys;
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    public RouteSegmentIndex(RouteGeometry geometry, double cellMeters) {
+        this.geometry = geometry;
+        this.cellMeters = cellMeters;
+        int points = geometry.getSegmentCount() + 1;
+        this.originLatitude = geometry.getLatitude(0);
+        this.originLongitude = geometry.getLongitude(0);
+        this.longitudeScale = Math.cos(Math.toRadians(originLatitude)) * METERS_PER_DEGREE;
+
+        this.xs = new double[points];
+        this.ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = x(geometry.getLongitude(i));
+            ys[i] = y(geometry.getLatitude(i));
+        }
+
+        Map<Long, int[]> building = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        for (int s = 0; s < geometry.getSegmentCount(); s++) {
+            long minColumn = cell(Math.min(xs[s], xs[s + 1]));
+            long maxColumn = cell(Math.max(xs[s], xs[s + 1]));
+            long minRow = cell(Math.min(ys[s], ys[s + 1]));
+            long maxRow = cell(Math.max(ys[s], ys[s + 1]));
+            for (long row = minRow; row <= maxRow; row++) {
+                for (long column = minColumn; column <= maxColumn; column++) {
+                    long key = key(row, column);
+                    int[] segments = building.computeIfAbsent(key, k -> new int[4]);
+                    int size = sizes.getOrDefault(key, 0);
+                    if (size == segments.length) {
+                        segments = Arrays.copyOf(segments, size * 2);
+                        building.put(key, segments);
+                    }
+                    segments[size] = s;
+                    sizes.put(key, size + 1);
+                }
+            }
+        }
+        building.forEach((key, segments) -> cells.put(key, Arrays.copyOf(segments, sizes.get(key))));
+    }
+
+    public RouteGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Distance in meters from the point to the nearest segment of the route, or
+     * {@link Double#POSITIVE_INFINITY} if no segment lies within {@code searchMeters}.
+     */
+    public double distanceToRoute(double latitude, double longitude, double searchMeters) {
+        double px = x(longitude);
+        double py = y(latitude);
+        int segment = nearestSegment(px, py, searchMeters);
+        return segment >= 0 ? distanceToSegment(segment, px, py) : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Distance along the route, in meters from its first point, of the point's projection on the
+     * nearest segment, or {@link Double#NaN} if no segment lies within {@code searchMeters}.
+     */
+    public double distanceAlongRoute(double latitude, double longitude, double searchMeters) {
+        double px = x(longitude);
+        double py = y(latitude);
+        int segment = nearestSegment(px, py, searchMeters);
+        if (segment < 0) {
+            return Double.NaN;
+        }
+        double start = geometry.getCumulativeDistance(segment);
+        double end = geometry.getCumulativeDistance(segment + 1);
+        return start + projection(segment, px, py) * (end - start);
+    }
+
+    /**
+     * Nearest segment to the projected point among the cells within {@code searchMeters}, or -1
+     * if none lies that close.
+     */
+    private int nearestSegment(double px, double py, double searchMeters) {
+        long minColumn = cell(px - searchMeters);
+        long maxColumn = cell(px + searchMeters);
+        long minRow = cell(py - searchMeters);
+        long maxRow = cell(py + searchMeters);
+
+        double best = Double.POSITIVE_INFINITY;
+        int bestSegment = -1;
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long column = minColumn; column <= maxColumn; column++) {
+                int[] segments = cells.get(key(row, column));
+                if (segments == null) {
+                    continue;
+                }
+                for (int s : segments) {
+                    double d = distanceToSegment(s, px, py);
+                    if (d < best) {
+                        best = d;
+                        bestSegment = s;
+                    }
+                }
+            }
+        }
+        return best <= searchMeters ? bestSegment : -1;
+    }
+
+    private double distanceToSegment(int s, double px, double py) {
+        double t = projection(s, px, py);
+        double ex = xs[s] + t * (xs[s + 1] - xs[s]) - px;
+        double ey = ys[s] + t * (ys[s + 1] - ys[s]) - py;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+    private double projection(int s, double px, double py) {
+        double dx = xs[s + 1] - xs[s];
+        double dy = ys[s + 1] - ys[s];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - xs[s]) * dx + (py - ys[s]) * dy) / lengthSquared;
+        return Math.max(0, Math.min(1, t));
+    }
+
+    private double x(double longitude) {
+        return (longitude - originLongitude) * longitudeScale;
+    }
+
+    private double y(double latitude) {
+        return (latitude - originLatitude) * METERS_PER_DEGREE;
+    }
+
+    private long cell(double meters) {
+        return (long) Math.floor(meters / cellMeters);
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) | (column & 0xFFFFFFFFL);
+    }
+}
@@ -1,13 +1,23 @@
 package com.bustransport.geolocation.service;
 
 import com.bustransport.geolocation.dto.response.AlertDTO;
+import com.bustransport.geolocation.entity.Bus;
 import com.bustransport.geolocation.entity.GeofenceAlert;
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.enums.AlertType;
+import com.bustransport.geolocation.repository.BusRepository;
 import com.bustransport.geolocation.repository.GeofenceAlertRepository;
+import com.bustransport.geolocation.store.OpenAlertIndex;
+import com.bustransport.geolocation.websocket.AlertBroadcaster;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,6 +29,9 @@ import java.util.stream.Collectors;
 public class AlertService {
 
     private final GeofenceAlertRepository alertRepository;
+    private final BusRepository busRepository;
+    private final OpenAlertIndex openAlertIndex;
+    private final AlertBroadcaster alertBroadcaster;
 
     public List<AlertDTO> getActiveAlerts() {
         return alertRepository.findActiveAlerts()
@@ -42,6 +55,87 @@ public class AlertService {
             .collect(Collectors.toList());
     }
 
+    /**
+     * Raises an alert unless one of the same type is already open for the bus. The check is
+     * made against the {@link OpenAlertIndex}, so the database is only touched for new alerts.
+     * Alerts are written in their own transaction, since position listeners raise them after
+     * the ingest transaction has committed.
+     *
+     * @return whether an alert was written
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean raiseAlert(Bus bus, BigDecimal latitude, BigDecimal longitude,
+                              AlertType alertType, AlertSeverity severity, String description) {
+        if (!openAlertIndex.tryOpen(bus.getId(), alertType)) {
+            return false;
+        }
+        writeAlert(bus, latitude, longitude, alertType, severity, description, true);
+        return true;
+    }
+
+    /**
+     * Variant for callers that only know the bus id; the bus is loaded only when the alert is new.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean raiseAlert(long busId, BigDecimal latitude, BigDecimal longitude,
+                              AlertType alertType, AlertSeverity severity, String description) {
+        if (openAlertIndex.isOpen(busId, alertType)) {
+            return false;
+        }
+        return busRepository.findById(busId)
+            .map(bus -> raiseAlert(bus, latitude, longitude, alertType, severity, description))
+            .orElse(false);
+    }
+
+    /**
+     * Records an event-style alert, such as a geofence transition, even if one of the same type
+     * is already open for the bus.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void recordAlert(long busId, BigDecimal latitude, BigDecimal longitude,
+                            AlertType alertType, AlertSeverity severity, String description) {
+        busRepository.findById(busId).ifPresent(bus -> writeAlert(bus, latitude, longitude, alertType, severity,
+            description, openAlertIndex.tryOpen(busId, alertType)));
+    }
+
+    /**
+     * @param opened whether the caller just opened the type in the index, which is then undone
+     *               if the alert is not committed
+     */
+    private void writeAlert(Bus bus, BigDecimal latitude, BigDecimal longitude, AlertType alertType,
+                            AlertSeverity severity, String description, boolean opened) {
+        long busId = bus.getId();
+        GeofenceAlert alert;
+        try {
+            alert = alertRepository.save(GeofenceAlert.builder()
+                .bus(bus)
+                .alertType(alertType)
+                .latitude(latitude)
+                .longitude(longitude)
+                .description(description)
+                .severity(severity)
+                .triggeredAt(LocalDateTime.now())
+                .build());
+        } catch (RuntimeException e) {
+            if (opened) {
+                openAlertIndex.close(busId, alertType);
+            }
+            throw e;
+        }
+        log.warn("Alert generated for bus {}: {} - {}", bus.getBusNumber(), alertType, description);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    alertBroadcaster.publish(alert);
+                } else if (opened) {
+                    openAlertIndex.close(busId, alertType);
+                }
+            }
+        });
+    }
+
     @Transactional
     public AlertDTO acknowledgeAlert(Long alertId, String acknowledgedBy, String resolution) {
         GeofenceAlert alert = alertRepository.findById(alertId)
@@ -49,6 +143,17 @@ public class AlertService {
         
         alert.acknowledge(acknowledgedBy, resolution);
         GeofenceAlert saved = alertRepository.save(alert);
+
+        Long busId = saved.getBus().getId();
+        AlertType alertType = saved.getAlertType();
+        if (!alertRepository.existsByBusIdAndAlertTypeAndAcknowledgedAtIsNull(busId, alertType)) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    openAlertIndex.close(busId, alertType);
+                }
+            });
+        }
         
         return toDTO(saved);
     }
@@ -1,19 +1,47 @@
 package com.bustransport.geolocation.service;
 
 import com.bustransport.geolocation.dto.request.TelemetryIngestDTO;
+import com.bustransport.geolocation.dto.response.BatchIngestResultDTO;
 import com.bustransport.geolocation.dto.response.BusLocationDTO;
+import com.bustransport.geolocation.dto.response.IngestItemResultDTO;
 import com.bustransport.geolocation.entity.Bus;
 import com.bustransport.geolocation.entity.BusLocation;
+import com.bustransport.geolocation.enums.IngestStatus;
+import com.bustransport.geolocation.geo.GeoUtils;
+import com.bustransport.geolocation.ingest.WriteBehindIngestPipeline;
+import com.bustransport.geolocation.repository.BusLatestLocationRepository;
+import com.bustransport.geolocation.repository.BusLocationBatchRepository;
 import com.bustransport.geolocation.repository.BusLocationRepository;
 import com.bustransport.geolocation.repository.BusRepository;
+import com.bustransport.geolocation.store.DeviceBinding;
+import com.bustransport.geolocation.store.DeviceRegistry;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.TelemetryDeduplicator;
+import com.bustransport.geolocation.trace.TrajectorySimplifier;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -23,32 +51,200 @@ public class BusLocationService {
 
     private final BusLocationRepository locationRepository;
     private final BusRepository busRepository;
+    private final BusLocationBatchRepository batchRepository;
+    private final BusLatestLocationRepository latestLocationRepository;
+    private final DeviceRegistry deviceRegistry;
+    private final TelemetryDeduplicator deduplicator;
+    private final FleetPositionStore positionStore;
+    private final WriteBehindIngestPipeline writeBehindPipeline;
+    private final Validator validator;
+    private final EntityManager entityManager;
+
+    @Value("${ingest.batch.max-size:1000}")
+    private int maxBatchSize;
 
     @Transactional
     public BusLocationDTO ingestTelemetry(TelemetryIngestDTO telemetry) {
-        Bus bus = busRepository.findByDeviceId(telemetry.getDeviceId())
-            .orElseThrow(() -> new RuntimeException("Bus not found for device: " + telemetry.getDeviceId()));
+        DeviceBinding binding = resolveDevice(telemetry.getDeviceId());
+        long recordedAt = FleetPositionStore.toEpochMillis(telemetry.getTimestamp());
+        if (deduplicator.admit(binding.getBusId(), recordedAt) != IngestStatus.ACCEPTED) {
+            // Resends are answered like the original so the device stops retrying; nothing is stored
+            return toDTO(toLocation(binding, telemetry), binding);
+        }
+        forgetUnlessCommitted(List.of(binding.getBusId()), List.of(recordedAt));
 
-        BusLocation location = BusLocation.builder()
-            .bus(bus)
-            .latitude(telemetry.getLatitude())
-            .longitude(telemetry.getLongitude())
-            .speed(telemetry.getSpeed())
-            .heading(telemetry.getHeading())
-            .altitude(telemetry.getAltitude())
-            .accuracy(telemetry.getAccuracy())
-            .recordedAt(telemetry.getTimestamp())
-            .odometer(telemetry.getOdometer())
+        BusLocation saved = locationRepository.save(toLocation(binding, telemetry));
+        batchRepository.upsertLatest(List.of(saved));
+        updateStoreAfterCommit(List.of(saved), List.of(binding));
+        return toDTO(saved, binding);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public IngestStatus acceptTelemetry(TelemetryIngestDTO telemetry) {
+        DeviceBinding binding = resolveDevice(telemetry.getDeviceId());
+        long recordedAt = FleetPositionStore.toEpochMillis(telemetry.getTimestamp());
+        IngestStatus admitted = deduplicator.admit(binding.getBusId(), recordedAt);
+        if (admitted != IngestStatus.ACCEPTED) {
+            return admitted;
+        }
+
+        IngestStatus status = writeBehindPipeline.offer(binding.getBusId(), binding.getRouteId(), binding.getBusNumber(),
+            telemetry.getLatitude().doubleValue(),
+            telemetry.getLongitude().doubleValue(),
+            toDouble(telemetry.getSpeed()),
+            toDouble(telemetry.getHeading()),
+            toDouble(telemetry.getAltitude()),
+            toDouble(telemetry.getAccuracy()),
+            toDouble(telemetry.getOdometer()),
+            recordedAt);
+        if (status == IngestStatus.REJECTED) {
+            // The device is told to retry, which must not be taken for a duplicate
+            deduplicator.forget(binding.getBusId(), recordedAt);
+        }
+        return status;
+    }
+
+    @Transactional
+    public BatchIngestResultDTO ingestTelemetryBatch(List<TelemetryIngestDTO> batch) {
+        if (batch.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "Batch of " + batch.size() + " fixes exceeds the limit of " + maxBatchSize);
+        }
+        long start = System.nanoTime();
+
+        Set<String> deviceIds = new HashSet<>();
+        for (TelemetryIngestDTO telemetry : batch) {
+            if (telemetry != null && telemetry.getDeviceId() != null) {
+                deviceIds.add(telemetry.getDeviceId());
+            }
+        }
+        Map<String, DeviceBinding> bindingsByDevice = deviceRegistry.resolveAll(deviceIds);
+
+        List<IngestItemResultDTO> results = new ArrayList<>(batch.size());
+        List<BusLocation> locations = new ArrayList<>(batch.size());
+        List<DeviceBinding> locationBindings = new ArrayList<>(batch.size());
+        List<IngestItemResultDTO> acceptedResults = new ArrayList<>(batch.size());
+        List<Long> admittedBusIds = new ArrayList<>(batch.size());
+        List<Long> admittedTimes = new ArrayList<>(batch.size());
+        int duplicates = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            TelemetryIngestDTO telemetry = batch.get(i);
+            IngestItemResultDTO result = IngestItemResultDTO.builder()
+                .index(i)
+                .deviceId(telemetry != null ? telemetry.getDeviceId() : null)
+                .build();
+            results.add(result);
+
+            String error = validate(telemetry);
+            DeviceBinding binding = error == null ? bindingsByDevice.get(telemetry.getDeviceId()) : null;
+            if (error == null && binding == null) {
+                error = "Bus not found for device: " + telemetry.getDeviceId();
+            }
+            if (error != null) {
+                result.setStatus(IngestStatus.REJECTED);
+                result.setError(error);
+                continue;
+            }
+
+            long recordedAt = FleetPositionStore.toEpochMillis(telemetry.getTimestamp());
+            IngestStatus admitted = deduplicator.admit(binding.getBusId(), recordedAt);
+            if (admitted != IngestStatus.ACCEPTED) {
+                result.setStatus(admitted);
+                duplicates++;
+                continue;
+            }
+            admittedBusIds.add(binding.getBusId());
+            admittedTimes.add(recordedAt);
+
+            locations.add(toLocation(binding, telemetry));
+            locationBindings.add(binding);
+            acceptedResults.add(result);
+        }
+        forgetUnlessCommitted(admittedBusIds, admittedTimes);
+
+        batchRepository.insertAll(locations);
+        batchRepository.upsertLatest(locations);
+
+        for (int i = 0; i < locations.size(); i++) {
+            IngestItemResultDTO result = acceptedResults.get(i);
+            result.setStatus(IngestStatus.ACCEPTED);
+            result.setLocationId(locations.get(i).getId());
+        }
+        updateStoreAfterCommit(locations, locationBindings);
+
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        log.debug("Ingested batch of {} fixes ({} accepted) in {} ms", batch.size(), locations.size(), elapsedMillis);
+
+        return BatchIngestResultDTO.builder()
+            .received(batch.size())
+            .accepted(locations.size())
+            .rejected(batch.size() - locations.size() - duplicates)
+            .duplicates(duplicates)
+            .elapsedMillis(elapsedMillis)
+            .results(results)
             .build();
+    }
+
+    /**
+     * Hands the stored fixes to the position store once the transaction storing them commits, so
+     * that listeners never publish a fix that is rolled back and never run inside the transaction.
+     */
+    private void updateStoreAfterCommit(List<BusLocation> locations, List<DeviceBinding> bindings) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                for (int i = 0; i < locations.size(); i++) {
+                    DeviceBinding binding = bindings.get(i);
+                    positionStore.update(binding.getBusId(), binding.getRouteId(), binding.getBusNumber(),
+                        locations.get(i));
+                }
+            }
+        });
+    }
 
-        BusLocation saved = locationRepository.save(location);
-        return toDTO(saved);
+    /**
+     * Releases the admitted fixes from the deduplicator if the transaction storing them does not
+     * commit, so that the device's retry is stored.
+     */
+    private void forgetUnlessCommitted(List<Long> busIds, List<Long> recordedAtMillis) {
+        if (busIds.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    for (int i = 0; i < busIds.size(); i++) {
+                        deduplicator.forget(busIds.get(i), recordedAtMillis.get(i));
+                    }
+                }
+            }
+        });
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BusLocationDTO getCurrentLocation(Long busId) {
-        BusLocation location = locationRepository.findLatestByBusId(busId)
+        return findLatestLocation(busId)
             .orElseThrow(() -> new RuntimeException("No location found for bus: " + busId));
-        return toDTO(location);
+    }
+
+    /**
+     * Latest location from the position store, or from the database for buses it does not hold.
+     */
+    public Optional<BusLocationDTO> findLatestLocation(Long busId) {
+        return positionStore.getLatest(busId).or(() -> loadLatestLocation(busId));
+    }
+
+    private Optional<BusLocationDTO> loadLatestLocation(Long busId) {
+        // Buses written by another instance are not in the local store yet
+        return latestLocationRepository.findByBusIdWithBus(busId)
+            .flatMap(latest -> {
+                positionStore.load(latest);
+                return positionStore.getLatest(busId);
+            });
     }
 
     public List<BusLocationDTO> getLocationHistory(Long busId, LocalDateTime startTime, LocalDateTime endTime) {
@@ -58,20 +254,98 @@ public class BusLocationService {
             .collect(Collectors.toList());
     }
 
+    /**
+     * History simplified to {@code toleranceMeters} and/or {@code maxPoints} as the fixes are
+     * read, so only the kept points and the simplifier's bounded buffers are held in memory.
+     */
+    public List<BusLocationDTO> getLocationHistory(Long busId, LocalDateTime startTime, LocalDateTime endTime,
+                                                   Double toleranceMeters, Integer maxPoints) {
+        if (toleranceMeters == null && maxPoints == null) {
+            return getLocationHistory(busId, startTime, endTime);
+        }
+        Bus bus = busRepository.findById(busId)
+            .orElseThrow(() -> new RuntimeException("Bus not found: " + busId));
+
+        TrajectorySimplifier<BusLocationDTO> simplifier = new TrajectorySimplifier<>(toleranceMeters, maxPoints);
+        try (Stream<BusLocation> locations = locationRepository.streamByBusIdAndRecordedAtBetween(busId, startTime, endTime)) {
+            locations.forEach(location -> {
+                simplifier.add(location.getLatitude().doubleValue(), location.getLongitude().doubleValue(),
+                    toDTO(location, bus.getId(), bus.getBusNumber(), bus.getRouteId()));
+                entityManager.detach(location);
+            });
+        }
+        return simplifier.finish();
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<BusLocationDTO> getAllActiveBusLocations() {
         LocalDateTime since = LocalDateTime.now().minusMinutes(5);
-        return locationRepository.findAllLatestLocations(since)
-            .stream()
-            .map(this::toDTO)
-            .collect(Collectors.toList());
+        return positionStore.getAllSince(since);
+    }
+
+    /**
+     * Active buses inside a {@code minLon,minLat,maxLon,maxLat} bounding box, optionally
+     * restricted to the given routes.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BusLocationDTO> getActiveBusLocationsWithin(String bbox, Set<Long> routeIds) {
+        double[] box = GeoUtils.parseBoundingBox(bbox);
+        LocalDateTime since = LocalDateTime.now().minusMinutes(5);
+        return positionStore.getWithin(box[1], box[0], box[3], box[2], routeIds, since);
+    }
+
+    private String validate(TelemetryIngestDTO telemetry) {
+        if (telemetry == null) {
+            return "Empty telemetry record";
+        }
+        Set<ConstraintViolation<TelemetryIngestDTO>> violations = validator.validate(telemetry);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining(", "));
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private DeviceBinding resolveDevice(String deviceId) {
+        return deviceRegistry.resolve(deviceId)
+            .orElseThrow(() -> new RuntimeException("Bus not found for device: " + deviceId));
+    }
+
+    private BusLocation toLocation(DeviceBinding binding, TelemetryIngestDTO telemetry) {
+        return BusLocation.builder()
+            .bus(busRepository.getReferenceById(binding.getBusId()))
+            .latitude(telemetry.getLatitude())
+            .longitude(telemetry.getLongitude())
+            .speed(telemetry.getSpeed())
+            .heading(telemetry.getHeading())
+            .altitude(telemetry.getAltitude())
+            .accuracy(telemetry.getAccuracy())
+            .recordedAt(telemetry.getTimestamp())
+            .odometer(telemetry.getOdometer())
+            .build();
     }
 
     private BusLocationDTO toDTO(BusLocation location) {
+        Bus bus = location.getBus();
+        return toDTO(location, bus.getId(), bus.getBusNumber(), bus.getRouteId());
+    }
+
+    private BusLocationDTO toDTO(BusLocation location, DeviceBinding binding) {
+        return toDTO(location, binding.getBusId(), binding.getBusNumber(), binding.getRouteId());
+    }
+
+    private BusLocationDTO toDTO(BusLocation location, Long busId, String busNumber, Long routeId) {
         return BusLocationDTO.builder()
             .id(location.getId())
-            .busId(location.getBus().getId())
-            .busNumber(location.getBus().getBusNumber())
-            .routeId(location.getBus().getRouteId())
+            .busId(busId)
+            .busNumber(busNumber)
+            .routeId(routeId)
             .latitude(location.getLatitude())
             .longitude(location.getLongitude())
             .speed(location.getSpeed())
@@ -0,0 +1,80 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.dto.response.BusLocationDTO;
+import com.bustransport.geolocation.dto.response.LiveTrackingDTO;
+import com.bustransport.geolocation.dto.response.StopArrivalDTO;
+import com.bustransport.geolocation.eta.BusEta;
+import com.bustransport.geolocation.eta.EtaEngine;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Serves live tracking and stop arrivals from the {@link EtaEngine} and the position store,
+ * without touching the database.
+ */
+@Service
+@RequiredArgsConstructor
+public class EtaService {
+
+    private final EtaEngine etaEngine;
+    private final FleetPositionStore positionStore;
+
+    @Value("${eta.on-schedule-tolerance-seconds:120}")
+    private long onScheduleToleranceSeconds;
+
+    public LiveTrackingDTO getLiveTracking(Long busId) {
+        BusLocationDTO location = positionStore.getLatest(busId)
+            .orElseThrow(() -> new RuntimeException("No location found for bus: " + busId));
+        Optional<BusEta> eta = etaEngine.getBusEta(busId);
+
+        LiveTrackingDTO.LiveTrackingDTOBuilder tracking = LiveTrackingDTO.builder()
+            .busId(busId)
+            .busNumber(location.getBusNumber())
+            .routeId(location.getRouteId())
+            .currentLocation(location)
+            .lastUpdate(location.getRecordedAt());
+        eta.ifPresent(e -> {
+            tracking.routeName(e.getRouteName()).onSchedule(isOnSchedule(e));
+            if (e.getStopCount() > 0) {
+                tracking.nextStopName(e.getStopName(0)).nextStopETA(minutesUntil(e.getArrivalMillis(0)));
+            }
+        });
+        return tracking.build();
+    }
+
+    public List<StopArrivalDTO> getStopArrivals(Long stopId, int limit) {
+        return etaEngine.getArrivals(stopId).stream()
+            .limit(limit)
+            .map(eta -> {
+                int i = eta.indexOf(stopId);
+                return StopArrivalDTO.builder()
+                    .stopId(stopId)
+                    .stopName(eta.getStopName(i))
+                    .busId(eta.getBusId())
+                    .busNumber(eta.getBusNumber())
+                    .routeId(eta.getRouteId())
+                    .routeName(eta.getRouteName())
+                    .expectedArrival(FleetPositionStore.toLocalDateTime(eta.getArrivalMillis(i)))
+                    .minutes(minutesUntil(eta.getArrivalMillis(i)))
+                    .onSchedule(isOnSchedule(eta))
+                    .build();
+            })
+            .toList();
+    }
+
+    private boolean isOnSchedule(BusEta eta) {
+        // There is no timetable, so schedule adherence is measured against usual travel times
+        return eta.getDelaySeconds() <= onScheduleToleranceSeconds;
+    }
+
+    private static int minutesUntil(long arrivalMillis) {
+        long millis = arrivalMillis - FleetPositionStore.toEpochMillis(LocalDateTime.now());
+        return (int) Math.max(0, Math.round(millis / 60_000.0));
+    }
+}
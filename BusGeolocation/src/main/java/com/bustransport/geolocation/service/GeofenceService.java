@@ -0,0 +1,125 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.dto.request.GeoPointDTO;
+import com.bustransport.geolocation.dto.request.GeofenceRequestDTO;
+import com.bustransport.geolocation.dto.response.GeofenceDTO;
+import com.bustransport.geolocation.entity.Geofence;
+import com.bustransport.geolocation.enums.AlertSeverity;
+import com.bustransport.geolocation.geofence.GeofenceEngine;
+import com.bustransport.geolocation.repository.GeofenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class GeofenceService {
+
+    private final GeofenceRepository geofenceRepository;
+    private final GeofenceEngine geofenceEngine;
+
+    public List<GeofenceDTO> getAllGeofences() {
+        return geofenceRepository.findAll()
+            .stream()
+            .map(this::toDTO)
+            .collect(Collectors.toList());
+    }
+
+    public GeofenceDTO getGeofence(Long geofenceId) {
+        return toDTO(findGeofence(geofenceId));
+    }
+
+    public List<GeofenceDTO> getGeofencesContainingBus(Long busId) {
+        Set<Long> ids = geofenceEngine.getGeofencesContaining(busId);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return geofenceRepository.findAllById(ids)
+            .stream()
+            .map(this::toDTO)
+            .collect(Collectors.toList());
+    }
+
+    @Transactional
+    public GeofenceDTO createGeofence(GeofenceRequestDTO request) {
+        Geofence geofence = new Geofence();
+        apply(geofence, request);
+        Geofence saved = geofenceRepository.save(geofence);
+        log.info("Geofence {} created: {}", saved.getId(), saved.getName());
+        reloadAfterCommit();
+        return toDTO(saved);
+    }
+
+    @Transactional
+    public GeofenceDTO updateGeofence(Long geofenceId, GeofenceRequestDTO request) {
+        Geofence geofence = findGeofence(geofenceId);
+        apply(geofence, request);
+        Geofence saved = geofenceRepository.save(geofence);
+        reloadAfterCommit();
+        return toDTO(saved);
+    }
+
+    @Transactional
+    public void deleteGeofence(Long geofenceId) {
+        geofenceRepository.delete(findGeofence(geofenceId));
+        log.info("Geofence {} deleted", geofenceId);
+        reloadAfterCommit();
+    }
+
+    private Geofence findGeofence(Long geofenceId) {
+        return geofenceRepository.findById(geofenceId)
+            .orElseThrow(() -> new RuntimeException("Geofence not found: " + geofenceId));
+    }
+
+    private void apply(Geofence geofence, GeofenceRequestDTO request) {
+        geofence.setName(request.getName());
+        geofence.setType(request.getType());
+        geofence.setPolygon(request.getPolygon().stream()
+            .map(point -> point.getLatitude() + "," + point.getLongitude())
+            .collect(Collectors.joining(";")));
+        geofence.setAlertOnEnter(Boolean.TRUE.equals(request.getAlertOnEnter()));
+        geofence.setAlertOnExit(Boolean.TRUE.equals(request.getAlertOnExit()));
+        geofence.setDwellSeconds(request.getDwellSeconds());
+        geofence.setSeverity(request.getSeverity() != null ? request.getSeverity() : AlertSeverity.MEDIUM);
+        geofence.setActive(request.getActive() == null || request.getActive());
+    }
+
+    private void reloadAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                geofenceEngine.reload();
+            }
+        });
+    }
+
+    private GeofenceDTO toDTO(Geofence geofence) {
+        List<GeoPointDTO> polygon = Arrays.stream(geofence.getPolygon().split(";"))
+            .map(vertex -> vertex.split(","))
+            .map(parts -> new GeoPointDTO(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])))
+            .collect(Collectors.toList());
+        return GeofenceDTO.builder()
+            .id(geofence.getId())
+            .name(geofence.getName())
+            .type(geofence.getType())
+            .polygon(polygon)
+            .alertOnEnter(geofence.getAlertOnEnter())
+            .alertOnExit(geofence.getAlertOnExit())
+            .dwellSeconds(geofence.getDwellSeconds())
+            .severity(geofence.getSeverity())
+            .active(geofence.getActive())
+            .createdAt(geofence.getCreatedAt())
+            .updatedAt(geofence.getUpdatedAt())
+            .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.dto.response.HeatmapHourDTO;
+import com.bustransport.geolocation.dto.response.HeatmapTileDTO;
+import com.bustransport.geolocation.geo.GeoUtils;
+import com.bustransport.geolocation.heatmap.HeatmapAggregator;
+import com.bustransport.geolocation.repository.HeatmapTileRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Answers heatmap queries from the {@code heatmap_tiles} rollups written by the
+ * {@link HeatmapAggregator}. Fixes of the last flush interval are not included yet.
+ */
+@Service
+@RequiredArgsConstructor
+public class HeatmapService {
+
+    private final HeatmapTileRepository tileRepository;
+    private final HeatmapAggregator aggregator;
+
+    @Value("${heatmap.max-range-days:366}")
+    private long maxRangeDays;
+
+    @Value("${heatmap.max-tiles:250000}")
+    private long maxTiles;
+
+    /**
+     * Tiles inside the bounding box with their totals over the time range, optionally only
+     * counting some hours of the day.
+     */
+    public List<HeatmapTileDTO> getTiles(String bbox, LocalDateTime startTime, LocalDateTime endTime,
+                                         Set<Integer> hoursOfDay) {
+        validateRange(startTime, endTime);
+        if (hoursOfDay != null && hoursOfDay.stream().anyMatch(hour -> hour < 0 || hour > 23)) {
+            throw new IllegalArgumentException("hours must be between 0 and 23");
+        }
+        int[] cells = toCellRange(bbox);
+        double size = aggregator.getCellSizeDegrees();
+
+        List<HeatmapTileDTO> tiles = new ArrayList<>();
+        tileRepository.sumByTile(startTime, endTime, cells[0], cells[1], cells[2], cells[3],
+            hoursOfDay != null ? hoursOfDay : Set.of(), rs -> {
+                int row = rs.getInt(1);
+                int column = rs.getInt(2);
+                tiles.add(HeatmapTileDTO.builder()
+                    .minLatitude(row * size)
+                    .minLongitude(column * size)
+                    .maxLatitude((row + 1) * size)
+                    .maxLongitude((column + 1) * size)
+                    .fixes(rs.getLong(3))
+                    .averageSpeed(averageSpeed(rs, 4))
+                    .minSpeed(getNullableDouble(rs, 6))
+                    .maxSpeed(getNullableDouble(rs, 7))
+                    .build());
+            });
+        return tiles;
+    }
+
+    /**
+     * Totals of the whole bounding box for each hour of the day over the time range.
+     */
+    public List<HeatmapHourDTO> getHourlyProfile(String bbox, LocalDateTime startTime, LocalDateTime endTime) {
+        validateRange(startTime, endTime);
+        int[] cells = toCellRange(bbox);
+
+        List<HeatmapHourDTO> hours = new ArrayList<>();
+        tileRepository.sumByHourOfDay(startTime, endTime, cells[0], cells[1], cells[2], cells[3], rs -> {
+            hours.add(HeatmapHourDTO.builder()
+                .hour(rs.getInt(1))
+                .fixes(rs.getLong(2))
+                .averageSpeed(averageSpeed(rs, 3))
+                .minSpeed(getNullableDouble(rs, 5))
+                .maxSpeed(getNullableDouble(rs, 6))
+                .build());
+        });
+        return hours;
+    }
+
+    private void validateRange(LocalDateTime startTime, LocalDateTime endTime) {
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+        if (Duration.between(startTime, endTime).compareTo(Duration.ofDays(maxRangeDays)) > 0) {
+            throw new IllegalArgumentException("Range exceeds " + maxRangeDays + " days");
+        }
+    }
+
+    /**
+     * Row and column range of the tiles covering the box: minRow, maxRow, minColumn, maxColumn.
+     */
+    private int[] toCellRange(String bbox) {
+        double[] box = GeoUtils.parseBoundingBox(bbox);
+        int[] cells = {
+            aggregator.cellIndex(box[1]), aggregator.cellIndex(box[3]),
+            aggregator.cellIndex(box[0]), aggregator.cellIndex(box[2])
+        };
+        long tileCount = (long) (cells[1] - cells[0] + 1) * (cells[3] - cells[2] + 1);
+        if (tileCount > maxTiles) {
+            throw new IllegalArgumentException("bbox covers " + tileCount + " tiles, more than " + maxTiles);
+        }
+        return cells;
+    }
+
+    private static Double averageSpeed(ResultSet rs, int speedCountColumn) throws SQLException {
+        long speedCount = rs.getLong(speedCountColumn);
+        return speedCount > 0 ? rs.getDouble(speedCountColumn + 1) / speedCount : null;
+    }
+
+    private static Double getNullableDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,81 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.enums.ExportFormat;
+import com.bustransport.geolocation.export.LocationHistoryWriter;
+import com.bustransport.geolocation.repository.LocationHistoryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Streams location history for one or more buses, or a whole route, as NDJSON or CSV. Rows go
+ * from a database cursor straight to the response, so memory use does not depend on the range.
+ */
+@Service
+@Slf4j
+public class LocationExportService {
+
+    private final LocationHistoryRepository historyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter exportedRows;
+    private final Duration maxRange;
+
+    public LocationExportService(LocationHistoryRepository historyRepository,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${history.export.max-range-days:31}") long maxRangeDays) {
+        this.historyRepository = historyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.exportedRows = meterRegistry.counter("history.export.rows");
+        this.maxRange = Duration.ofDays(maxRangeDays);
+    }
+
+    /**
+     * Validates the query up front, so errors are still reported with a proper status, and
+     * returns the body that runs it once the response is being written.
+     */
+    public StreamingResponseBody exportHistory(Set<Long> busIds, Long routeId,
+                                               LocalDateTime startTime, LocalDateTime endTime,
+                                               ExportFormat format) {
+        boolean byBuses = busIds != null && !busIds.isEmpty();
+        if (byBuses == (routeId != null)) {
+            throw new IllegalArgumentException("Exactly one of busIds or routeId is required");
+        }
+        if (endTime.isBefore(startTime)) {
+            throw new IllegalArgumentException("endTime is before startTime");
+        }
+        if (Duration.between(startTime, endTime).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Range exceeds " + maxRange.toDays() + " days");
+        }
+
+        return out -> {
+            long start = System.nanoTime();
+            try (LocationHistoryWriter writer = LocationHistoryWriter.create(format, out, objectMapper.getFactory())) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (byBuses) {
+                        historyRepository.streamByBuses(busIds, startTime, endTime, writer::write);
+                    } else {
+                        historyRepository.streamByRoute(routeId, startTime, endTime, writer::write);
+                    }
+                });
+                exportedRows.increment(writer.getRows());
+                log.debug("Exported {} history rows as {} in {} ms", writer.getRows(), format,
+                    (System.nanoTime() - start) / 1_000_000);
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.dto.response.LocationTraceDTO;
+import com.bustransport.geolocation.dto.response.TracePointDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.entity.BusLocation;
+import com.bustransport.geolocation.entity.LocationTrace;
+import com.bustransport.geolocation.repository.BusLocationRepository;
+import com.bustransport.geolocation.repository.BusRepository;
+import com.bustransport.geolocation.repository.LocationTraceRepository;
+import com.bustransport.geolocation.trace.TraceBuilder;
+import com.bustransport.geolocation.trace.TracePoint;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.bustransport.geolocation.store.FleetPositionStore.toEpochMillis;
+import static com.bustransport.geolocation.store.FleetPositionStore.toLocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class LocationTraceService {
+
+    private final LocationTraceRepository traceRepository;
+    private final BusLocationRepository locationRepository;
+    private final BusRepository busRepository;
+    private final EntityManager entityManager;
+
+    /**
+     * Compacts the raw fixes of a finished trip into one trace, streaming them so that the
+     * trip is never held in memory as entities.
+     */
+    @Transactional
+    public LocationTraceDTO buildTrace(Long busId, LocalDateTime startTime, LocalDateTime endTime) {
+        Bus bus = busRepository.findById(busId)
+            .orElseThrow(() -> new RuntimeException("Bus not found: " + busId));
+
+        TraceBuilder builder = new TraceBuilder();
+        try (Stream<BusLocation> locations = locationRepository.streamByBusIdAndRecordedAtBetween(busId, startTime, endTime)) {
+            locations.forEach(location -> {
+                builder.add(location.getLatitude().doubleValue(),
+                    location.getLongitude().doubleValue(),
+                    toEpochMillis(location.getRecordedAt()),
+                    location.getSpeed() != null ? location.getSpeed().doubleValue() : Double.NaN);
+                entityManager.detach(location);
+            });
+        }
+
+        if (builder.getPointCount() == 0) {
+            throw new RuntimeException("No locations found for bus " + busId + " between " + startTime + " and " + endTime);
+        }
+
+        LocationTrace saved = traceRepository.save(builder.build(bus, bus.getRouteId()));
+        log.debug("Built trace {} for bus {} with {} points in {} bytes",
+            saved.getId(), busId, saved.getPointCount(), saved.getEncodedPoints().length);
+        return toDTO(saved);
+    }
+
+    public List<LocationTraceDTO> getRecentTraces(Long busId, int limit) {
+        return traceRepository.findRecentTraceSummaries(busId, limit);
+    }
+
+    public List<LocationTraceDTO> getTracesByRoute(Long routeId, LocalDateTime startTime, LocalDateTime endTime) {
+        return traceRepository.findTraceSummariesByRoute(routeId, startTime, endTime);
+    }
+
+    public List<TracePointDTO> getTracePoints(Long traceId) {
+        LocationTrace trace = traceRepository.findById(traceId)
+            .orElseThrow(() -> new RuntimeException("Trace not found: " + traceId));
+
+        List<TracePointDTO> points = new ArrayList<>(trace.getPointCount());
+        Iterator<TracePoint> iterator = trace.points();
+        while (iterator.hasNext()) {
+            TracePoint point = iterator.next();
+            points.add(TracePointDTO.builder()
+                .latitude(point.getLatitude())
+                .longitude(point.getLongitude())
+                .speed(point.getSpeed())
+                .recordedAt(toLocalDateTime(point.getRecordedAtMillis()))
+                .build());
+        }
+        return points;
+    }
+
+    private LocationTraceDTO toDTO(LocationTrace trace) {
+        return LocationTraceDTO.builder()
+            .id(trace.getId())
+            .busId(trace.getBus().getId())
+            .routeId(trace.getRouteId())
+            .startTime(trace.getStartTime())
+            .endTime(trace.getEndTime())
+            .totalDistance(trace.getTotalDistance())
+            .totalStops(trace.getTotalStops())
+            .averageSpeed(trace.getAverageSpeed())
+            .pointCount(trace.getPointCount())
+            .encodedBytes(trace.getEncodedPoints() != null ? trace.getEncodedPoints().length : 0)
+            .build();
+    }
+}
@@ -0,0 +1,74 @@
+package com.bustransport.geolocation.service;
+
+import com.bustransport.geolocation.dto.response.ReplayStatusDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.replay.ReplayEngine;
+import com.bustransport.geolocation.repository.BusRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the buses of a replay and checks its bounds before handing it to the
+ * {@link ReplayEngine}.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReplayService {
+
+    private final ReplayEngine replayEngine;
+    private final BusRepository busRepository;
+
+    @Value("${replay.max-speed:100}")
+    private double maxSpeed;
+
+    @Value("${replay.max-buses:5000}")
+    private int maxBuses;
+
+    @Value("${replay.max-range-days:7}")
+    private long maxRangeDays;
+
+    public ReplayStatusDTO startReplay(Set<Long> busIds, Long routeId,
+                                       LocalDateTime startTime, LocalDateTime endTime, double speed) {
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+        if (Duration.between(startTime, endTime).compareTo(Duration.ofDays(maxRangeDays)) > 0) {
+            throw new IllegalArgumentException("Range exceeds " + maxRangeDays + " days");
+        }
+        if (!(speed > 0) || speed > maxSpeed) {
+            throw new IllegalArgumentException("speed must be greater than 0 and at most " + maxSpeed);
+        }
+
+        List<Bus> buses;
+        if (busIds != null && !busIds.isEmpty()) {
+            buses = busRepository.findAllById(busIds);
+        } else if (routeId != null) {
+            buses = busRepository.findByRouteId(routeId);
+        } else {
+            buses = busRepository.findAll();
+        }
+        if (buses.isEmpty()) {
+            throw new IllegalArgumentException("No buses to replay");
+        }
+        if (buses.size() > maxBuses) {
+            throw new IllegalArgumentException("Replay covers " + buses.size() + " buses, more than " + maxBuses);
+        }
+        return replayEngine.start(buses, startTime, endTime, speed);
+    }
+
+    public ReplayStatusDTO stopReplay() {
+        return replayEngine.stop(false)
+            .orElseThrow(() -> new RuntimeException("No replay has been started"));
+    }
+
+    public ReplayStatusDTO getReplayStatus() {
+        return replayEngine.getStatus()
+            .orElseThrow(() -> new RuntimeException("No replay has been started"));
+    }
+}
@@ -1,27 +1,36 @@
 package com.bustransport.geolocation.simulation;
 
+import com.bustransport.geolocation.dto.response.BusLocationDTO;
 import com.bustransport.geolocation.entity.Bus;
 import com.bustransport.geolocation.entity.BusLocation;
-import com.bustransport.geolocation.entity.GeofenceAlert;
 import com.bustransport.geolocation.enums.AlertSeverity;
 import com.bustransport.geolocation.enums.AlertType;
 import com.bustransport.geolocation.enums.BusStatus;
+import com.bustransport.geolocation.enums.SimulationEngine;
+import com.bustransport.geolocation.enums.SimulationMovement;
+import com.bustransport.geolocation.repository.BusLocationBatchRepository;
 import com.bustransport.geolocation.repository.BusLocationRepository;
 import com.bustransport.geolocation.repository.BusRepository;
-import com.bustransport.geolocation.repository.GeofenceAlertRepository;
+import com.bustransport.geolocation.route.RouteCursor;
+import com.bustransport.geolocation.route.RouteGeometryRegistry;
+import com.bustransport.geolocation.service.AlertService;
+import com.bustransport.geolocation.service.BusLocationService;
+import com.bustransport.geolocation.store.FleetPositionStore;
 import com.bustransport.geolocation.websocket.LocationWebSocketHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
@@ -30,12 +39,22 @@ public class BusSimulator {
 
     private final BusRepository busRepository;
     private final BusLocationRepository locationRepository;
-    private final GeofenceAlertRepository alertRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final BusLocationBatchRepository batchRepository;
+    private final FleetPositionStore positionStore;
+    private final AlertService alertService;
+    private final BusLocationService locationService;
+    private final RouteGeometryRegistry routeGeometries;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${simulation.enabled:true}")
     private boolean simulationEnabled;
 
+    @Value("${simulation.engine:SERIAL}")
+    private SimulationEngine engine;
+
+    @Value("${simulation.movement:RANDOM_WALK}")
+    private SimulationMovement movement;
+
     @Value("${simulation.speed-variation:0.2}")
     private double speedVariation;
 
@@ -43,16 +62,17 @@ public class BusSimulator {
     private double maintenanceProbability;
 
     private final Random random = new Random();
+    private final Map<Long, RouteCursor> routeCursors = new ConcurrentHashMap<>();
 
     // Paris city center bounds for simulation
-    private static final double PARIS_LAT_MIN = 48.815;
-    private static final double PARIS_LAT_MAX = 48.902;
-    private static final double PARIS_LON_MIN = 2.225;
-    private static final double PARIS_LON_MAX = 2.470;
+    static final double PARIS_LAT_MIN = 48.815;
+    static final double PARIS_LAT_MAX = 48.902;
+    static final double PARIS_LON_MIN = 2.225;
+    static final double PARIS_LON_MAX = 2.470;
 
     @Scheduled(fixedDelayString = "${simulation.update-interval-seconds:10}000")
     public void simulateBusMovements() {
-        if (!simulationEnabled) {
+        if (!simulationEnabled || engine != SimulationEngine.SERIAL) {
             return;
         }
 
@@ -71,22 +91,23 @@ public class BusSimulator {
     private void simulateBusMovement(Bus bus) {
         try {
             // Get last known location or create initial one
-            BusLocation lastLocation = locationRepository
-                .findLatestByBusId(bus.getId())
-                .orElse(createInitialLocation(bus));
+            BusLocationDTO lastLocation = locationService
+                .findLatestLocation(bus.getId())
+                .orElseGet(this::createInitialLocation);
 
             // Calculate new position
             BusLocation newLocation = calculateNextPosition(bus, lastLocation);
 
-            // Save location
-            locationRepository.save(newLocation);
+            // Save location and its latest-location projection together, then publish it
+            transactionTemplate.executeWithoutResult(status -> {
+                locationRepository.save(newLocation);
+                batchRepository.upsertLatest(List.of(newLocation));
+            });
+            positionStore.update(newLocation);
 
             // Check for alerts
             checkAndGenerateAlerts(bus, newLocation);
 
-            // Broadcast via WebSocket
-            broadcastLocation(newLocation);
-
             log.debug("Updated location for bus {}: ({}, {})",
                 bus.getBusNumber(), newLocation.getLatitude(), newLocation.getLongitude());
 
@@ -95,10 +116,9 @@ public class BusSimulator {
         }
     }
 
-    private BusLocation createInitialLocation(Bus bus) {
+    private BusLocationDTO createInitialLocation() {
         // Start at a random position in Paris
-        return BusLocation.builder()
-            .bus(bus)
+        return BusLocationDTO.builder()
             .latitude(randomLatitude())
             .longitude(randomLongitude())
             .speed(BigDecimal.ZERO)
@@ -109,7 +129,7 @@ public class BusSimulator {
             .build();
     }
 
-    private BusLocation calculateNextPosition(Bus bus, BusLocation lastLocation) {
+    private BusLocation calculateNextPosition(Bus bus, BusLocationDTO lastLocation) {
         LocalDateTime now = LocalDateTime.now();
         
         // Base speed: 20-40 km/h with variations
@@ -117,6 +137,11 @@ public class BusSimulator {
         double speedVar = (random.nextDouble() - 0.5) * 2 * speedVariation * baseSpeed;
         BigDecimal speed = new BigDecimal(baseSpeed + speedVar).setScale(2, RoundingMode.HALF_UP);
 
+        RouteCursor cursor = movement == SimulationMovement.FOLLOW_ROUTE ? routeCursorFor(bus) : null;
+        if (cursor != null) {
+            return followRoute(bus, lastLocation, cursor, speed, now);
+        }
+
         // Calculate time elapsed in hours
         double hoursElapsed = 10.0 / 3600.0; // 10 seconds
 
@@ -163,6 +188,40 @@ public class BusSimulator {
             .build();
     }
 
+    private BusLocation followRoute(Bus bus, BusLocationDTO lastLocation, RouteCursor cursor,
+                                    BigDecimal speed, LocalDateTime now) {
+        double travelledMeters = cursor.advance(speed.doubleValue() / 3.6, 10.0);
+
+        BigDecimal newOdometer = (lastLocation.getOdometer() != null ? lastLocation.getOdometer() : BigDecimal.ZERO)
+            .add(BigDecimal.valueOf(travelledMeters / 1000.0)).setScale(2, RoundingMode.HALF_UP);
+
+        return BusLocation.builder()
+            .bus(bus)
+            .latitude(BigDecimal.valueOf(cursor.getLatitude()).setScale(7, RoundingMode.HALF_UP))
+            .longitude(BigDecimal.valueOf(cursor.getLongitude()).setScale(7, RoundingMode.HALF_UP))
+            .speed(cursor.isDwelling() ? BigDecimal.ZERO.setScale(2) : speed)
+            .heading(BigDecimal.valueOf(cursor.getHeading()).setScale(2, RoundingMode.HALF_UP))
+            .altitude(new BigDecimal("50.0"))
+            .accuracy(new BigDecimal(5 + random.nextInt(10)))
+            .recordedAt(now)
+            .odometer(newOdometer)
+            .build();
+    }
+
+    private RouteCursor routeCursorFor(Bus bus) {
+        RouteCursor cursor = routeCursors.get(bus.getId());
+        if (cursor != null && cursor.getGeometry().getRouteId() == bus.getRouteId()) {
+            return cursor;
+        }
+        cursor = routeGeometries.get(bus.getRouteId())
+            .map(geometry -> new RouteCursor(geometry, random.nextDouble() * 2 * geometry.getLength()))
+            .orElse(null);
+        if (cursor != null) {
+            routeCursors.put(bus.getId(), cursor);
+        }
+        return cursor;
+    }
+
     private void checkAndGenerateAlerts(Bus bus, BusLocation location) {
         // Random maintenance alerts (2% probability)
         if (random.nextDouble() < maintenanceProbability) {
@@ -181,53 +240,12 @@ public class BusSimulator {
             generateAlert(bus, location, AlertType.EMERGENCY, AlertSeverity.CRITICAL,
                 "Emergency situation reported");
         }
-
-        // Off-route detection (5% chance for simulation)
-        if (random.nextDouble() < 0.05) {
-            generateAlert(bus, location, AlertType.OFF_ROUTE, AlertSeverity.HIGH,
-                "Bus detected off designated route");
-        }
     }
 
-    private void generateAlert(Bus bus, BusLocation location, AlertType alertType, 
+    private void generateAlert(Bus bus, BusLocation location, AlertType alertType,
                                AlertSeverity severity, String description) {
-        // Check if similar alert already exists
-        List<GeofenceAlert> existingAlerts = alertRepository.findByBusIdAndAcknowledgedAtIsNull(bus.getId());
-        boolean alreadyHasAlert = existingAlerts.stream()
-            .anyMatch(alert -> alert.getAlertType() == alertType);
-
-        if (!alreadyHasAlert) {
-            GeofenceAlert alert = GeofenceAlert.builder()
-                .bus(bus)
-                .alertType(alertType)
-                .latitude(location.getLatitude())
-                .longitude(location.getLongitude())
-                .description(description)
-                .severity(severity)
-                .triggeredAt(LocalDateTime.now())
-                .build();
-
-            alertRepository.save(alert);
-            log.warn("Alert generated for bus {}: {} - {}", bus.getBusNumber(), alertType, description);
-
-            // Would publish event here for notification service
-            // eventPublisher.publishAlert(alert);
-        }
-    }
-
-    private void broadcastLocation(BusLocation location) {
-        try {
-            messagingTemplate.convertAndSend(
-                "/topic/bus-locations",
-                location
-            );
-            messagingTemplate.convertAndSend(
-                "/topic/bus/" + location.getBus().getId(),
-                location
-            );
-        } catch (Exception e) {
-            log.error("Error broadcasting location", e);
-        }
+        alertService.raiseAlert(bus, location.getLatitude(), location.getLongitude(),
+            alertType, severity, description);
     }
 
     private BigDecimal randomLatitude() {
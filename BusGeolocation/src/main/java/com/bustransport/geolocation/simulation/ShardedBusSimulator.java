@@ -0,0 +1,262 @@
+package com.bustransport.geolocation.simulation;
+
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.enums.BusStatus;
+import com.bustransport.geolocation.enums.SimulationEngine;
+import com.bustransport.geolocation.enums.SimulationMovement;
+import com.bustransport.geolocation.ingest.TelemetryBatch;
+import com.bustransport.geolocation.repository.BusLocationBatchRepository;
+import com.bustransport.geolocation.repository.BusRepository;
+import com.bustransport.geolocation.route.RouteCursor;
+import com.bustransport.geolocation.route.RouteGeometryRegistry;
+import com.bustransport.geolocation.service.BusLocationService;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load-generating simulator for large fleets. Active buses are partitioned into one shard per
+ * worker; each tick every shard advances its buses in primitive arrays and writes them as a
+ * single batch, in parallel with the other shards. Enabled with {@code simulation.engine=SHARDED}.
+ */
+@Component
+@Slf4j
+public class ShardedBusSimulator implements SmartLifecycle {
+
+    private final BusRepository busRepository;
+    private final BusLocationBatchRepository batchRepository;
+    private final FleetPositionStore positionStore;
+    private final BusLocationService locationService;
+    private final RouteGeometryRegistry routeGeometries;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int workers;
+    private final long intervalMillis;
+    private final int refreshIntervalTicks;
+    private final double speedVariation;
+    private final SimulationMovement movement;
+
+    private final Timer tickTimer;
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final AtomicInteger simulatedBuses = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workerPool;
+    private volatile boolean running;
+
+    // Only touched by the scheduler thread
+    private List<SimulationShard> shards = List.of();
+    private Map<Long, RouteCursor> routeCursors = new HashMap<>();
+    private long tickCount;
+    private long firstTickAt;
+    private long lastTickAt;
+
+    public ShardedBusSimulator(
+            BusRepository busRepository,
+            BusLocationBatchRepository batchRepository,
+            FleetPositionStore positionStore,
+            BusLocationService locationService,
+            RouteGeometryRegistry routeGeometries,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${simulation.enabled:true}") boolean simulationEnabled,
+            @Value("${simulation.engine:SERIAL}") SimulationEngine engine,
+            @Value("${simulation.sharded.workers:4}") int workers,
+            @Value("${simulation.update-interval-seconds:10}") long intervalSeconds,
+            @Value("${simulation.sharded.refresh-interval-ticks:6}") int refreshIntervalTicks,
+            @Value("${simulation.speed-variation:0.2}") double speedVariation,
+            @Value("${simulation.movement:RANDOM_WALK}") SimulationMovement movement) {
+        this.busRepository = busRepository;
+        this.batchRepository = batchRepository;
+        this.positionStore = positionStore;
+        this.locationService = locationService;
+        this.routeGeometries = routeGeometries;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = simulationEnabled && engine == SimulationEngine.SHARDED;
+        this.workers = Math.max(1, workers);
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        this.refreshIntervalTicks = Math.max(1, refreshIntervalTicks);
+        this.speedVariation = speedVariation;
+        this.movement = movement;
+
+        this.tickTimer = Timer.builder("simulation.tick.duration")
+            .description("Time to advance and persist every simulated bus once")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("simulation.tick.lag", lagMillis, AtomicLong::get)
+            .description("How far the latest tick started behind its schedule")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("simulation.buses", simulatedBuses, AtomicInteger::get)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        workerPool = Executors.newFixedThreadPool(workers, daemonThreads("simulation-worker-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("simulation-scheduler-"));
+        firstTickAt = System.currentTimeMillis() + intervalMillis;
+        lastTickAt = System.currentTimeMillis();
+        scheduler.scheduleAtFixedRate(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        running = true;
+        log.info("Sharded simulator started with {} workers, tick every {} ms", workers, intervalMillis);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            workerPool.shutdownNow();
+            scheduler = null;
+            workerPool = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void tick() {
+        long startedAt = System.currentTimeMillis();
+        // A fixed-rate tick that overran delays the following ones; this is that delay
+        lagMillis.set(Math.max(0, startedAt - (firstTickAt + tickCount * intervalMillis)));
+        double elapsedSeconds = (startedAt - lastTickAt) / 1000.0;
+        lastTickAt = startedAt;
+
+        try {
+            if (tickCount % refreshIntervalTicks == 0) {
+                refreshShards();
+            }
+
+            long recordedAt = FleetPositionStore.toEpochMillis(LocalDateTime.now());
+            List<Callable<Void>> tasks = new ArrayList<>(shards.size());
+            for (SimulationShard shard : shards) {
+                tasks.add(() -> {
+                    shard.advance(recordedAt, elapsedSeconds, speedVariation);
+                    persist(shard.getBatch());
+                    return null;
+                });
+            }
+            for (Future<Void> result : workerPool.invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    log.error("Error simulating shard", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Error during sharded bus simulation", e);
+        } finally {
+            tickCount++;
+            long duration = System.currentTimeMillis() - startedAt;
+            tickTimer.record(duration, TimeUnit.MILLISECONDS);
+            if (duration > intervalMillis) {
+                log.warn("Simulation tick for {} buses took {} ms, longer than the {} ms interval",
+                    simulatedBuses.get(), duration, intervalMillis);
+            }
+        }
+    }
+
+    private void refreshShards() {
+        List<Bus> activeBuses = busRepository.findByStatus(BusStatus.ACTIVE);
+        List<List<Bus>> groups = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (Bus bus : activeBuses) {
+            groups.get((int) Math.floorMod(bus.getId(), (long) workers)).add(bus);
+        }
+
+        Map<Long, RouteCursor> previousCursors = routeCursors;
+        Map<Long, RouteCursor> cursors = new HashMap<>();
+        List<SimulationShard> refreshed = new ArrayList<>(workers);
+        for (List<Bus> group : groups) {
+            if (!group.isEmpty()) {
+                refreshed.add(new SimulationShard(group, locationService::findLatestLocation, bus -> {
+                    RouteCursor cursor = cursorFor(bus, previousCursors);
+                    if (cursor != null) {
+                        cursors.put(bus.getId(), cursor);
+                    }
+                    return cursor;
+                }));
+            }
+        }
+        routeCursors = cursors;
+        shards = refreshed;
+        simulatedBuses.set(activeBuses.size());
+        log.debug("Simulating {} active buses in {} shards", activeBuses.size(), refreshed.size());
+    }
+
+    /**
+     * Keeps a bus's place on its route across refreshes; new buses start at a random point so
+     * that buses of the same route spread out along it.
+     */
+    private RouteCursor cursorFor(Bus bus, Map<Long, RouteCursor> previousCursors) {
+        if (movement != SimulationMovement.FOLLOW_ROUTE) {
+            return null;
+        }
+        RouteCursor previous = previousCursors.get(bus.getId());
+        if (previous != null && previous.getGeometry().getRouteId() == bus.getRouteId()) {
+            return previous;
+        }
+        return routeGeometries.get(bus.getRouteId())
+            .map(geometry -> new RouteCursor(geometry, ThreadLocalRandom.current().nextDouble() * 2 * geometry.getLength()))
+            .orElse(null);
+    }
+
+    private void persist(TelemetryBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            batchRepository.insertAll(batch);
+            batchRepository.upsertLatest(batch);
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            positionStore.update(batch.getBusId(i), batch.getRouteId(i), batch.getBusNumber(i),
+                batch.getLocationId(i), batch.getLatitude(i), batch.getLongitude(i),
+                batch.getSpeed(i), batch.getHeading(i), batch.getAltitude(i),
+                batch.getAccuracy(i), batch.getOdometer(i), batch.getRecordedAtMillis(i));
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package com.bustransport.geolocation.simulation;
+
+import com.bustransport.geolocation.dto.response.BusLocationDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.ingest.TelemetryBatch;
+import com.bustransport.geolocation.route.RouteCursor;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Simulation state of a fixed group of buses in primitive columns. Each tick moves every bus,
+ * along its route when it has a {@link RouteCursor} and in a random walk otherwise, and writes
+ * the new fixes into the shard's reusable {@link TelemetryBatch}.
+ */
+class SimulationShard {
+
+    private static final double BASE_SPEED_KMH = 30.0;
+    private static final double ALTITUDE_METERS = 50.0;
+
+    private final int size;
+    private final long[] busIds;
+    private final long[] routeIds;
+    private final String[] busNumbers;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] headings;
+    private final double[] odometers;
+    private final RouteCursor[] cursors;
+    private final TelemetryBatch batch;
+
+    /**
+     * @param latestLocation last known location of a bus, if any
+     * @param cursorFor route cursor for a bus, or {@code null} for a random walk
+     */
+    SimulationShard(List<Bus> buses, Function<Long, Optional<BusLocationDTO>> latestLocation,
+                    Function<Bus, RouteCursor> cursorFor) {
+        this.size = buses.size();
+        this.busIds = new long[size];
+        this.routeIds = new long[size];
+        this.busNumbers = new String[size];
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.headings = new double[size];
+        this.odometers = new double[size];
+        this.cursors = new RouteCursor[size];
+        this.batch = new TelemetryBatch(Math.max(1, size));
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            Bus bus = buses.get(i);
+            busIds[i] = bus.getId();
+            routeIds[i] = bus.getRouteId();
+            busNumbers[i] = bus.getBusNumber();
+
+            Optional<BusLocationDTO> last = latestLocation.apply(bus.getId());
+            if (last.isPresent()) {
+                BusLocationDTO location = last.get();
+                latitudes[i] = location.getLatitude().doubleValue();
+                longitudes[i] = location.getLongitude().doubleValue();
+                headings[i] = location.getHeading() != null ? location.getHeading().doubleValue() : random.nextInt(360);
+                odometers[i] = location.getOdometer() != null ? location.getOdometer().doubleValue() : 0;
+            } else {
+                latitudes[i] = random.nextDouble(BusSimulator.PARIS_LAT_MIN, BusSimulator.PARIS_LAT_MAX);
+                longitudes[i] = random.nextDouble(BusSimulator.PARIS_LON_MIN, BusSimulator.PARIS_LON_MAX);
+                headings[i] = random.nextInt(360);
+            }
+            cursors[i] = cursorFor.apply(bus);
+        }
+    }
+
+    /**
+     * Moves every bus by the distance covered in {@code elapsedSeconds} and fills the batch
+     * with the resulting fixes, all stamped {@code recordedAt}.
+     */
+    void advance(long recordedAt, double elapsedSeconds, double speedVariation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double hoursElapsed = elapsedSeconds / 3600.0;
+        batch.clear();
+
+        for (int i = 0; i < size; i++) {
+            double speed = BASE_SPEED_KMH + (random.nextDouble() - 0.5) * 2 * speedVariation * BASE_SPEED_KMH;
+            if (cursors[i] != null) {
+                RouteCursor cursor = cursors[i];
+                odometers[i] += cursor.advance(speed / 3.6, elapsedSeconds) / 1000.0;
+                latitudes[i] = cursor.getLatitude();
+                longitudes[i] = cursor.getLongitude();
+                headings[i] = cursor.getHeading();
+                batch.add(busIds[i], routeIds[i], busNumbers[i], latitudes[i], longitudes[i],
+                    cursor.isDwelling() ? 0 : speed, headings[i],
+                    ALTITUDE_METERS, 5 + random.nextInt(10), odometers[i], recordedAt);
+                continue;
+            }
+
+            double distanceKm = speed * hoursElapsed;
+
+            double heading = (headings[i] + (random.nextDouble() - 0.5) * 30) % 360;
+            if (heading < 0) {
+                heading += 360;
+            }
+            double headingRad = Math.toRadians(heading);
+
+            double latitude = latitudes[i] + distanceKm * Math.cos(headingRad) / 111.0;
+            double longitude = longitudes[i]
+                + distanceKm * Math.sin(headingRad) / (111.0 * Math.cos(Math.toRadians(latitudes[i])));
+
+            latitudes[i] = clamp(latitude, BusSimulator.PARIS_LAT_MIN, BusSimulator.PARIS_LAT_MAX);
+            longitudes[i] = clamp(longitude, BusSimulator.PARIS_LON_MIN, BusSimulator.PARIS_LON_MAX);
+            headings[i] = heading;
+            odometers[i] += distanceKm;
+
+            batch.add(busIds[i], routeIds[i], busNumbers[i], latitudes[i], longitudes[i], speed, heading,
+                ALTITUDE_METERS, 5 + random.nextInt(10), odometers[i], recordedAt);
+        }
+    }
+
+    TelemetryBatch getBatch() {
+        return batch;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,334 @@
+package com.bustransport.geolocation.sse;
+
+import com.bustransport.geolocation.websocket.LocationBroadcaster;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the location frames of {@link LocationBroadcaster} as Server-Sent Events. Each frame is
+ * encoded into an SSE event once per topic and the same bytes are written to every subscriber.
+ * A topic keeps its last {@code sse.history-size} events: a new subscriber starts from the latest
+ * keyframe in it, and a reconnecting one resumes after its {@code Last-Event-ID}, or from the
+ * latest keyframe if that event is no longer held. A subscriber is only a cursor into that
+ * history, so idle connections cost no thread and no per-connection queue; writes are done by a
+ * small pool, and a subscriber that falls behind the history skips to the latest keyframe.
+ */
+@Component
+@Slf4j
+public class LocationStreamHub implements SmartLifecycle {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final int historySize;
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+    private final int maxSubscribers;
+    private final int writerThreads;
+    private final byte[] preamble;
+
+    private final Counter skippedCounter;
+    private final Counter rejectedCounter;
+
+    private ExecutorService writers;
+    private volatile boolean running;
+
+    public LocationStreamHub(MeterRegistry meterRegistry,
+                             @Value("${sse.history-size:64}") int historySize,
+                             @Value("${sse.timeout-minutes:30}") long timeoutMinutes,
+                             @Value("${sse.heartbeat-seconds:15}") long heartbeatSeconds,
+                             @Value("${sse.retry-ms:3000}") long retryMillis,
+                             @Value("${sse.max-subscribers:50000}") int maxSubscribers,
+                             @Value("${sse.writer-threads:8}") int writerThreads) {
+        this.historySize = Math.max(1, historySize);
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.heartbeatMillis = TimeUnit.SECONDS.toMillis(heartbeatSeconds);
+        this.maxSubscribers = maxSubscribers;
+        this.writerThreads = Math.max(1, writerThreads);
+        this.preamble = ("retry: " + retryMillis + "\n\n").getBytes(StandardCharsets.US_ASCII);
+        this.skippedCounter = meterRegistry.counter("sse.subscribers.skipped");
+        this.rejectedCounter = meterRegistry.counter("sse.subscribers.rejected");
+        Gauge.builder("sse.subscribers", subscribers, Set::size)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the frames published to {@code destination}, or returns empty if the
+     * subscriber limit is reached.
+     */
+    public Optional<ResponseBodyEmitter> subscribe(String destination, String lastEventId) {
+        if (!running || subscribers.size() >= maxSubscribers) {
+            rejectedCounter.increment();
+            return Optional.empty();
+        }
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(timeoutMillis);
+        Topic topic = topics.computeIfAbsent(destination, key -> new Topic());
+        Subscriber subscriber = new Subscriber(topic, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscriber.close());
+
+        topic.add(subscriber, parseEventId(lastEventId));
+        subscribers.add(subscriber);
+        subscriber.schedule();
+        return Optional.of(emitter);
+    }
+
+    /**
+     * Publishes one frame, already encoded as JSON, to the subscribers of {@code destination}.
+     * The frame sequence is the event id.
+     */
+    public void publish(String destination, long sequence, boolean keyframe, byte[] payload) {
+        Topic topic = topics.get(destination);
+        if (topic == null) {
+            if (!keyframe) {
+                // Nobody could resume from a delta before the topic's first keyframe
+                return;
+            }
+            topic = topics.computeIfAbsent(destination, key -> new Topic());
+        }
+        topic.append(sequence, keyframe, encodeEvent(sequence, payload));
+        for (Subscriber subscriber : topic.subscribers) {
+            subscriber.schedule();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${sse.heartbeat-seconds:15}000")
+    public void heartbeat() {
+        long idleSince = System.currentTimeMillis() - heartbeatMillis / 2;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.lastWriteAt < idleSince) {
+                subscriber.heartbeatDue = true;
+                subscriber.schedule();
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        writers.shutdown();
+        try {
+            writers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Below the embedded web server (DEFAULT_PHASE - 2048), whose shutdown completes the open
+        // event streams, so that no writer is gone while a stream can still be written
+        return DEFAULT_PHASE - 3072;
+    }
+
+    private static byte[] encodeEvent(long sequence, byte[] payload) {
+        byte[] head = ("id: " + sequence + "\ndata: ").getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream event = new ByteArrayOutputStream(head.length + payload.length + 2);
+        event.writeBytes(head);
+        event.writeBytes(payload);
+        event.write('\n');
+        event.write('\n');
+        return event.toByteArray();
+    }
+
+    private static Long parseEventId(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Recent events of one destination in a ring, addressed by a position that counts every
+     * event ever appended.
+     */
+    private final class Topic {
+
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+        // Guarded by this
+        private final long[] sequences = new long[historySize];
+        private final boolean[] keyframes = new boolean[historySize];
+        private final byte[][] events = new byte[historySize][];
+        private long nextPosition;
+        private long keyframePosition = -1;
+
+        private synchronized void append(long sequence, boolean keyframe, byte[] event) {
+            int index = (int) (nextPosition % historySize);
+            sequences[index] = sequence;
+            keyframes[index] = keyframe;
+            events[index] = event;
+            if (keyframe) {
+                keyframePosition = nextPosition;
+            }
+            nextPosition++;
+        }
+
+        private synchronized void add(Subscriber subscriber, Long lastEventId) {
+            subscriber.cursor = lastEventId != null ? positionAfter(lastEventId) : -1;
+            if (subscriber.cursor < 0) {
+                subscriber.cursor = resyncPosition();
+            }
+            subscribers.add(subscriber);
+        }
+
+        private long positionAfter(long sequence) {
+            for (long position = nextPosition - 1; position >= oldestPosition(); position--) {
+                if (sequences[(int) (position % historySize)] == sequence) {
+                    return position + 1;
+                }
+            }
+            return -1;
+        }
+
+        private long oldestPosition() {
+            return Math.max(0, nextPosition - historySize);
+        }
+
+        /**
+         * Latest keyframe still held, or the next event if there is none.
+         */
+        private long resyncPosition() {
+            return keyframePosition >= oldestPosition() ? keyframePosition : nextPosition;
+        }
+
+        /**
+         * Returns the event at the subscriber's cursor and advances it, or null if it is up to date.
+         */
+        private synchronized byte[] next(Subscriber subscriber) {
+            if (subscriber.cursor < oldestPosition()) {
+                subscriber.cursor = resyncPosition();
+                skippedCounter.increment();
+            }
+            if (subscriber.cursor >= nextPosition) {
+                return null;
+            }
+            return events[(int) (subscriber.cursor++ % historySize)];
+        }
+
+        private synchronized boolean hasNext(Subscriber subscriber) {
+            return subscriber.cursor < nextPosition;
+        }
+    }
+
+    private final class Subscriber {
+
+        private final Topic topic;
+        private final ResponseBodyEmitter emitter;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        // Guarded by the topic
+        private long cursor;
+
+        private volatile boolean preambleSent;
+        private volatile boolean heartbeatDue;
+        private volatile boolean closed;
+        private volatile long lastWriteAt = System.currentTimeMillis();
+
+        private Subscriber(Topic topic, ResponseBodyEmitter emitter) {
+            this.topic = topic;
+            this.emitter = emitter;
+        }
+
+        private void schedule() {
+            if (!closed && draining.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!closed) {
+                    byte[] event = nextWrite();
+                    if (event == null) {
+                        draining.set(false);
+                        if (!(heartbeatDue || topic.hasNext(this)) || !draining.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+                    emitter.send(event, MediaType.TEXT_EVENT_STREAM);
+                    lastWriteAt = System.currentTimeMillis();
+                }
+            } catch (Exception e) {
+                log.debug("Closing location stream after a failed write: {}", e.getMessage());
+                close();
+                emitter.completeWithError(e);
+            }
+        }
+
+        private byte[] nextWrite() {
+            if (!preambleSent) {
+                preambleSent = true;
+                return preamble;
+            }
+            byte[] event = topic.next(this);
+            if (event != null) {
+                heartbeatDue = false;
+                return event;
+            }
+            if (heartbeatDue) {
+                heartbeatDue = false;
+                return HEARTBEAT;
+            }
+            return null;
+        }
+
+        private void close() {
+            closed = true;
+            topic.subscribers.remove(this);
+            subscribers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.bustransport.geolocation.store;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The bus a GPS device reports for, as needed on the ingest path.
+ */
+@Getter
+@AllArgsConstructor
+public class DeviceBinding {
+    private final String deviceId;
+    private final long busId;
+    private final long routeId;
+    private final String busNumber;
+}
@@ -0,0 +1,102 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.repository.BusRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resident deviceId to bus index for the ingest path. Loaded at startup and kept in step with
+ * the {@code buses} table by {@link DeviceRegistryListener}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeviceRegistry {
+
+    private final BusRepository busRepository;
+
+    private final Map<String, DeviceBinding> bindingsByDevice = new ConcurrentHashMap<>();
+    private final Map<Long, String> devicesByBus = new ConcurrentHashMap<>();
+
+    /**
+     * Looks up the bus for a device, falling back to the database for devices registered
+     * outside this instance.
+     */
+    public Optional<DeviceBinding> resolve(String deviceId) {
+        DeviceBinding binding = bindingsByDevice.get(deviceId);
+        if (binding != null) {
+            return Optional.of(binding);
+        }
+        return busRepository.findByDeviceId(deviceId).map(this::register);
+    }
+
+    /**
+     * Registered binding of a device, or null; never queries the database.
+     */
+    public DeviceBinding get(String deviceId) {
+        return bindingsByDevice.get(deviceId);
+    }
+
+    /**
+     * Resolves many devices at once; devices missing from the registry are fetched in a single query.
+     */
+    public Map<String, DeviceBinding> resolveAll(Collection<String> deviceIds) {
+        Map<String, DeviceBinding> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String deviceId : deviceIds) {
+            DeviceBinding binding = bindingsByDevice.get(deviceId);
+            if (binding != null) {
+                result.put(deviceId, binding);
+            } else {
+                missing.add(deviceId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Bus bus : busRepository.findByDeviceIdIn(missing)) {
+                result.put(bus.getDeviceId(), register(bus));
+            }
+        }
+        return result;
+    }
+
+    public Optional<DeviceBinding> findByBusId(long busId) {
+        String deviceId = devicesByBus.get(busId);
+        return deviceId != null ? Optional.ofNullable(bindingsByDevice.get(deviceId)) : Optional.empty();
+    }
+
+    public synchronized DeviceBinding register(Bus bus) {
+        DeviceBinding binding = new DeviceBinding(bus.getDeviceId(), bus.getId(), bus.getRouteId(), bus.getBusNumber());
+        String previousDevice = devicesByBus.put(bus.getId(), bus.getDeviceId());
+        if (previousDevice != null && !previousDevice.equals(bus.getDeviceId())) {
+            bindingsByDevice.remove(previousDevice);
+        }
+        bindingsByDevice.put(bus.getDeviceId(), binding);
+        return binding;
+    }
+
+    public synchronized void unregister(long busId) {
+        String deviceId = devicesByBus.remove(busId);
+        if (deviceId != null) {
+            bindingsByDevice.remove(deviceId);
+        }
+    }
+
+    public void rebuild(List<Bus> buses) {
+        buses.forEach(this::register);
+        log.info("Device registry loaded with {} devices", bindingsByDevice.size());
+    }
+
+    public int size() {
+        return bindingsByDevice.size();
+    }
+}
@@ -0,0 +1,45 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.entity.Bus;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Mirrors bus inserts, updates and deletes into the {@link DeviceRegistry} once they commit.
+ */
+@Component
+@RequiredArgsConstructor
+public class DeviceRegistryListener {
+
+    private final DeviceRegistry deviceRegistry;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Bus bus) {
+        afterCommit(() -> deviceRegistry.register(bus));
+    }
+
+    @PostRemove
+    public void onRemove(Bus bus) {
+        Long busId = bus.getId();
+        afterCommit(() -> deviceRegistry.unregister(busId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,502 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.dto.response.BusLocationDTO;
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.entity.BusLatestLocation;
+import com.bustransport.geolocation.entity.BusLocation;
+import com.bustransport.geolocation.enums.PositionSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Latest known position of every bus, held in column arrays indexed by a per-bus slot.
+ * Both ingest paths write through this store so that current-location reads never hit JPA.
+ * A uniform lat/lon grid over the slots answers viewport queries without a full scan.
+ */
+@Component
+@Slf4j
+public class FleetPositionStore {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final StampedLock lock = new StampedLock();
+    private final double cellSizeDegrees;
+    private final long idleEvictionMillis;
+    private final List<PositionUpdateListener> listeners = new CopyOnWriteArrayList<>();
+
+    private Map<Long, Integer> slotByBusId = new HashMap<>();
+    private Map<Long, GridCell> cells = new HashMap<>();
+    private int size;
+    private long[] busIds = new long[INITIAL_CAPACITY];
+    private long[] routeIds = new long[INITIAL_CAPACITY];
+    private String[] busNumbers = new String[INITIAL_CAPACITY];
+    private long[] locationIds = new long[INITIAL_CAPACITY];
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private double[] speeds = new double[INITIAL_CAPACITY];
+    private double[] headings = new double[INITIAL_CAPACITY];
+    private double[] altitudes = new double[INITIAL_CAPACITY];
+    private double[] accuracies = new double[INITIAL_CAPACITY];
+    private double[] odometers = new double[INITIAL_CAPACITY];
+    private long[] recordedAtMillis = new long[INITIAL_CAPACITY];
+    private long[] cellKeys = new long[INITIAL_CAPACITY];
+    private int[] cellPositions = new int[INITIAL_CAPACITY];
+
+    public FleetPositionStore(@Value("${fleet.grid.cell-size-degrees:0.01}") double cellSizeDegrees,
+                              @Value("${fleet.store.idle-eviction-hours:24}") long idleEvictionHours) {
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.idleEvictionMillis = TimeUnit.HOURS.toMillis(idleEvictionHours);
+    }
+
+    public void addListener(PositionUpdateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Records a persisted location. Fixes older than the one already held for the bus are ignored.
+     */
+    public void update(BusLocation location) {
+        Bus bus = location.getBus();
+        update(bus.getId(), bus.getRouteId(), bus.getBusNumber(), location);
+    }
+
+    /**
+     * Records a persisted location whose bus is only a reference, using the bus details supplied.
+     */
+    public void update(long busId, long routeId, String busNumber, BusLocation location) {
+        update(busId, routeId, busNumber, location.getId(),
+            location.getLatitude().doubleValue(),
+            location.getLongitude().doubleValue(),
+            toDouble(location.getSpeed()),
+            toDouble(location.getHeading()),
+            toDouble(location.getAltitude()),
+            toDouble(location.getAccuracy()),
+            toDouble(location.getOdometer()),
+            toEpochMillis(location.getRecordedAt()));
+    }
+
+    /**
+     * Records a location read back from the database. Listeners are not notified, since it is
+     * not a new fix.
+     */
+    public void load(BusLatestLocation latest) {
+        long stamp = lock.writeLock();
+        try {
+            record(latest);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void update(long busId, long routeId, String busNumber, long locationId,
+                       double latitude, double longitude, double speed, double heading,
+                       double altitude, double accuracy, double odometer, long recordedAt) {
+        String currentBusNumber;
+        long stamp = lock.writeLock();
+        try {
+            int slot = record(busId, routeId, busNumber, locationId, latitude, longitude, speed, heading,
+                altitude, accuracy, odometer, recordedAt);
+            if (slot < 0) {
+                return;
+            }
+            currentBusNumber = busNumbers[slot];
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        notifyListeners(busId, routeId, currentBusNumber, latitude, longitude, speed, heading, recordedAt,
+            PositionSource.LIVE);
+    }
+
+    /**
+     * Hands a fix re-emitted from stored history to the listeners without recording it, so that
+     * a replay never replaces the live position of a bus.
+     */
+    public void replay(long busId, long routeId, String busNumber,
+                       double latitude, double longitude, double speed, double heading, long recordedAt) {
+        notifyListeners(busId, routeId, busNumber, latitude, longitude, speed, heading, recordedAt,
+            PositionSource.REPLAY);
+    }
+
+    private void notifyListeners(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAt, PositionSource source) {
+        for (PositionUpdateListener listener : listeners) {
+            try {
+                listener.onPositionUpdate(busId, routeId, busNumber, latitude, longitude, speed, heading,
+                    recordedAt, source);
+            } catch (RuntimeException e) {
+                // The fix is stored; one failing listener must neither fail the caller nor starve the others
+                log.error("{} failed on the position of bus {}", listener.getClass().getSimpleName(), busId, e);
+            }
+        }
+    }
+
+    private int record(BusLatestLocation latest) {
+        Bus bus = latest.getBus();
+        return record(bus.getId(), bus.getRouteId(), bus.getBusNumber(), latest.getLocationId(),
+            latest.getLatitude().doubleValue(),
+            latest.getLongitude().doubleValue(),
+            toDouble(latest.getSpeed()),
+            toDouble(latest.getHeading()),
+            toDouble(latest.getAltitude()),
+            toDouble(latest.getAccuracy()),
+            toDouble(latest.getOdometer()),
+            toEpochMillis(latest.getRecordedAt()));
+    }
+
+    /**
+     * Writes a fix into the bus's slot, allocating one for a new bus. The caller holds the write
+     * lock, if the store is shared.
+     *
+     * @return the slot, or -1 if the store already holds a newer fix for the bus
+     */
+    private int record(long busId, long routeId, String busNumber, long locationId,
+                       double latitude, double longitude, double speed, double heading,
+                       double altitude, double accuracy, double odometer, long recordedAt) {
+        Integer slot = slotByBusId.get(busId);
+        if (slot == null) {
+            slot = allocateSlot(busId);
+        } else if (recordedAt < recordedAtMillis[slot]) {
+            return -1;
+        }
+        int i = slot;
+        routeIds[i] = routeId;
+        if (busNumber != null) {
+            busNumbers[i] = busNumber;
+        }
+        locationIds[i] = locationId;
+        latitudes[i] = latitude;
+        longitudes[i] = longitude;
+        speeds[i] = speed;
+        headings[i] = heading;
+        altitudes[i] = altitude;
+        accuracies[i] = accuracy;
+        odometers[i] = odometer;
+        recordedAtMillis[i] = recordedAt;
+        moveToCell(i, cellKey(cellIndex(latitude), cellIndex(longitude)));
+        return i;
+    }
+
+    public Optional<BusLocationDTO> getLatest(long busId) {
+        long stamp = lock.readLock();
+        try {
+            Integer slot = slotByBusId.get(busId);
+            return slot == null ? Optional.empty() : Optional.of(toDTO(slot));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public List<BusLocationDTO> getAllSince(LocalDateTime since) {
+        long sinceMillis = toEpochMillis(since);
+        long stamp = lock.readLock();
+        try {
+            List<BusLocationDTO> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                if (recordedAtMillis[i] >= sinceMillis) {
+                    result.add(toDTO(i));
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Buses whose latest fix lies inside the box and was recorded at or after {@code since},
+     * optionally restricted to some routes.
+     */
+    public List<BusLocationDTO> getWithin(double minLatitude, double minLongitude,
+                                          double maxLatitude, double maxLongitude,
+                                          Set<Long> routeIdFilter, LocalDateTime since) {
+        long sinceMillis = toEpochMillis(since);
+        long minRow = cellIndex(minLatitude);
+        long maxRow = cellIndex(maxLatitude);
+        long minColumn = cellIndex(minLongitude);
+        long maxColumn = cellIndex(maxLongitude);
+        long cellCount = (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+
+        long stamp = lock.readLock();
+        try {
+            List<BusLocationDTO> result = new ArrayList<>();
+            if (cellCount > cells.size()) {
+                // Viewport covers more cells than are occupied: walk the occupied ones instead
+                for (Map.Entry<Long, GridCell> entry : cells.entrySet()) {
+                    long row = entry.getKey() >> 32;
+                    long column = (int) (long) entry.getKey();
+                    if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn) {
+                        collectWithin(entry.getValue(), minLatitude, minLongitude, maxLatitude, maxLongitude,
+                            routeIdFilter, sinceMillis, result);
+                    }
+                }
+            } else {
+                for (long row = minRow; row <= maxRow; row++) {
+                    for (long column = minColumn; column <= maxColumn; column++) {
+                        GridCell cell = cells.get(cellKey(row, column));
+                        if (cell != null) {
+                            collectWithin(cell, minLatitude, minLongitude, maxLatitude, maxLongitude,
+                                routeIdFilter, sinceMillis, result);
+                        }
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void collectWithin(GridCell cell, double minLatitude, double minLongitude,
+                               double maxLatitude, double maxLongitude,
+                               Set<Long> routeIdFilter, long sinceMillis, List<BusLocationDTO> result) {
+        for (int p = 0; p < cell.size(); p++) {
+            int i = cell.get(p);
+            if (recordedAtMillis[i] >= sinceMillis
+                    && latitudes[i] >= minLatitude && latitudes[i] <= maxLatitude
+                    && longitudes[i] >= minLongitude && longitudes[i] <= maxLongitude
+                    && (routeIdFilter == null || routeIdFilter.isEmpty() || routeIdFilter.contains(routeIds[i]))) {
+                result.add(toDTO(i));
+            }
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Replaces the contents with the given latest locations without notifying listeners, since
+     * they are not new fixes. The new state is built aside and swapped in, so readers never see
+     * an empty fleet, and fixes ingested meanwhile are kept where they are newer.
+     */
+    public void rebuild(List<BusLatestLocation> latestLocations) {
+        FleetPositionStore rebuilt = new FleetPositionStore(cellSizeDegrees,
+            TimeUnit.MILLISECONDS.toHours(idleEvictionMillis));
+        latestLocations.forEach(rebuilt::record);
+
+        int rebuiltSize;
+        long stamp = lock.writeLock();
+        try {
+            for (int i = 0; i < size; i++) {
+                rebuilt.record(busIds[i], routeIds[i], busNumbers[i], locationIds[i],
+                    latitudes[i], longitudes[i], speeds[i], headings[i],
+                    altitudes[i], accuracies[i], odometers[i], recordedAtMillis[i]);
+            }
+            slotByBusId = rebuilt.slotByBusId;
+            cells = rebuilt.cells;
+            size = rebuilt.size;
+            busIds = rebuilt.busIds;
+            routeIds = rebuilt.routeIds;
+            busNumbers = rebuilt.busNumbers;
+            locationIds = rebuilt.locationIds;
+            latitudes = rebuilt.latitudes;
+            longitudes = rebuilt.longitudes;
+            speeds = rebuilt.speeds;
+            headings = rebuilt.headings;
+            altitudes = rebuilt.altitudes;
+            accuracies = rebuilt.accuracies;
+            odometers = rebuilt.odometers;
+            recordedAtMillis = rebuilt.recordedAtMillis;
+            cellKeys = rebuilt.cellKeys;
+            cellPositions = rebuilt.cellPositions;
+            rebuiltSize = size;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        log.info("Fleet position store rebuilt with {} buses", rebuiltSize);
+    }
+
+    /**
+     * Forgets buses that have not reported for {@code fleet.store.idle-eviction-hours}, so that
+     * retired buses do not hold a slot forever. A read for an evicted bus falls back to the
+     * database.
+     */
+    @Scheduled(fixedDelayString = "${fleet.store.eviction-interval-ms:600000}")
+    public void evictIdle() {
+        if (idleEvictionMillis <= 0) {
+            return;
+        }
+        long cutoff = toEpochMillis(LocalDateTime.now()) - idleEvictionMillis;
+        int evicted = 0;
+        long stamp = lock.writeLock();
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                if (recordedAtMillis[i] < cutoff) {
+                    releaseSlot(i);
+                    evicted++;
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (evicted > 0) {
+            log.info("Evicted {} buses idle for more than {} hours from the fleet position store",
+                evicted, TimeUnit.MILLISECONDS.toHours(idleEvictionMillis));
+        }
+    }
+
+    private int allocateSlot(long busId) {
+        if (size == busIds.length) {
+            grow(size * 2);
+        }
+        int slot = size++;
+        busIds[slot] = busId;
+        busNumbers[slot] = null;
+        cellKeys[slot] = NO_CELL;
+        slotByBusId.put(busId, slot);
+        return slot;
+    }
+
+    /**
+     * Frees a slot by moving the last slot into it, keeping the slots dense.
+     */
+    private void releaseSlot(int slot) {
+        removeFromCell(slot);
+        slotByBusId.remove(busIds[slot]);
+        int last = --size;
+        if (slot != last) {
+            busIds[slot] = busIds[last];
+            routeIds[slot] = routeIds[last];
+            busNumbers[slot] = busNumbers[last];
+            locationIds[slot] = locationIds[last];
+            latitudes[slot] = latitudes[last];
+            longitudes[slot] = longitudes[last];
+            speeds[slot] = speeds[last];
+            headings[slot] = headings[last];
+            altitudes[slot] = altitudes[last];
+            accuracies[slot] = accuracies[last];
+            odometers[slot] = odometers[last];
+            recordedAtMillis[slot] = recordedAtMillis[last];
+            cellKeys[slot] = cellKeys[last];
+            cellPositions[slot] = cellPositions[last];
+            if (cellKeys[slot] != NO_CELL) {
+                cells.get(cellKeys[slot]).set(cellPositions[slot], slot);
+            }
+            slotByBusId.put(busIds[slot], slot);
+        }
+        busNumbers[last] = null;
+    }
+
+    private void moveToCell(int slot, long cellKey) {
+        if (cellKeys[slot] == cellKey) {
+            return;
+        }
+        removeFromCell(slot);
+        cellPositions[slot] = cells.computeIfAbsent(cellKey, key -> new GridCell()).add(slot);
+        cellKeys[slot] = cellKey;
+    }
+
+    private void removeFromCell(int slot) {
+        long currentKey = cellKeys[slot];
+        if (currentKey == NO_CELL) {
+            return;
+        }
+        GridCell current = cells.get(currentKey);
+        int moved = current.removeAt(cellPositions[slot]);
+        if (moved >= 0) {
+            cellPositions[moved] = cellPositions[slot];
+        }
+        if (current.size() == 0) {
+            cells.remove(currentKey);
+        }
+        cellKeys[slot] = NO_CELL;
+    }
+
+    private long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long cellKey(long row, long column) {
+        return (row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private void grow(int capacity) {
+        busIds = Arrays.copyOf(busIds, capacity);
+        routeIds = Arrays.copyOf(routeIds, capacity);
+        busNumbers = Arrays.copyOf(busNumbers, capacity);
+        locationIds = Arrays.copyOf(locationIds, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        speeds = Arrays.copyOf(speeds, capacity);
+        headings = Arrays.copyOf(headings, capacity);
+        altitudes = Arrays.copyOf(altitudes, capacity);
+        accuracies = Arrays.copyOf(accuracies, capacity);
+        odometers = Arrays.copyOf(odometers, capacity);
+        recordedAtMillis = Arrays.copyOf(recordedAtMillis, capacity);
+        cellKeys = Arrays.copyOf(cellKeys, capacity);
+        cellPositions = Arrays.copyOf(cellPositions, capacity);
+    }
+
+    private BusLocationDTO toDTO(int i) {
+        return BusLocationDTO.builder()
+            .id(locationIds[i])
+            .busId(busIds[i])
+            .busNumber(busNumbers[i])
+            .routeId(routeIds[i])
+            .latitude(toDecimal(latitudes[i], 7))
+            .longitude(toDecimal(longitudes[i], 7))
+            .speed(toDecimal(speeds[i], 2))
+            .heading(toDecimal(headings[i], 2))
+            .altitude(toDecimal(altitudes[i], 2))
+            .accuracy(toDecimal(accuracies[i], 2))
+            .recordedAt(toLocalDateTime(recordedAtMillis[i]))
+            .odometer(toDecimal(odometers[i], 2))
+            .build();
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private static BigDecimal toDecimal(double value, int scale) {
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+
+    public static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Converts a true UTC epoch timestamp, as sent by devices, to the clock used here: the
+     * server's local wall time read as UTC.
+     */
+    public static long fromUtcEpochMillis(long utcEpochMillis) {
+        int offsetSeconds = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochMilli(utcEpochMillis)).getTotalSeconds();
+        return utcEpochMillis + offsetSeconds * 1000L;
+    }
+
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000),
+            Math.floorMod(epochMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+}
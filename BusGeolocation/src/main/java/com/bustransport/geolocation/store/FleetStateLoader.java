@@ -0,0 +1,65 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.repository.BusLatestLocationRepository;
+import com.bustransport.geolocation.repository.BusRepository;
+import com.bustransport.geolocation.repository.GeofenceAlertRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Loads the device registry, fleet position store and open alert index from the database at
+ * startup. Runs as an early lifecycle phase so that it completes before ingest starts and before
+ * any {@code @Scheduled} task, which only starts once the context has been refreshed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FleetStateLoader implements SmartLifecycle {
+
+    private final BusRepository busRepository;
+    private final BusLatestLocationRepository latestLocationRepository;
+    private final DeviceRegistry deviceRegistry;
+    private final FleetPositionStore positionStore;
+    private final GeofenceAlertRepository alertRepository;
+    private final OpenAlertIndex openAlertIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        log.info("Loading device registry, fleet position store and open alerts from database...");
+        transactionTemplate.executeWithoutResult(status -> {
+            deviceRegistry.rebuild(busRepository.findAll());
+
+            if (latestLocationRepository.count() == 0) {
+                int backfilled = latestLocationRepository.backfillFromHistory();
+                if (backfilled > 0) {
+                    log.info("Backfilled latest location of {} buses from history", backfilled);
+                }
+            }
+            positionStore.rebuild(latestLocationRepository.findAllWithBus());
+            openAlertIndex.rebuild(alertRepository.findOpenAlertKeys());
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Before the write-behind pipeline and every other component that takes in fixes
+        return DEFAULT_PHASE - 8192;
+    }
+}
@@ -0,0 +1,49 @@
+package com.bustransport.geolocation.store;
+
+import java.util.Arrays;
+
+/**
+ * Slots of the buses currently inside one cell of the {@link FleetPositionStore} grid.
+ */
+class GridCell {
+
+    private int[] slots = new int[4];
+    private int size;
+
+    /**
+     * @return the position the slot was stored at
+     */
+    int add(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = slot;
+        return size++;
+    }
+
+    /**
+     * Removes the entry at {@code position} by moving the last entry into it.
+     *
+     * @return the slot that now occupies {@code position}, or -1 if none was moved
+     */
+    int removeAt(int position) {
+        int last = --size;
+        if (position == last) {
+            return -1;
+        }
+        slots[position] = slots[last];
+        return slots[position];
+    }
+
+    void set(int position, int slot) {
+        slots[position] = slot;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int position) {
+        return slots[position];
+    }
+}
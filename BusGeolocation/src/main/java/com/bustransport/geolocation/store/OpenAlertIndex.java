@@ -0,0 +1,64 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.enums.AlertType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Open (unacknowledged) alert types per bus, one bit per {@link AlertType}, so that deduplicating
+ * a new alert is a memory lookup rather than a query.
+ */
+@Component
+@Slf4j
+public class OpenAlertIndex {
+
+    private final Map<Long, Integer> openTypes = new ConcurrentHashMap<>();
+
+    public boolean isOpen(long busId, AlertType type) {
+        Integer mask = openTypes.get(busId);
+        return mask != null && (mask & bit(type)) != 0;
+    }
+
+    /**
+     * Marks the type open for the bus.
+     *
+     * @return {@code false} if it was already open, in which case the caller must not raise it again
+     */
+    public boolean tryOpen(long busId, AlertType type) {
+        int bit = bit(type);
+        boolean[] opened = new boolean[1];
+        openTypes.compute(busId, (id, mask) -> {
+            int current = mask == null ? 0 : mask;
+            opened[0] = (current & bit) == 0;
+            return current | bit;
+        });
+        return opened[0];
+    }
+
+    public void close(long busId, AlertType type) {
+        int bit = bit(type);
+        openTypes.computeIfPresent(busId, (id, mask) -> {
+            int remaining = mask & ~bit;
+            return remaining == 0 ? null : remaining;
+        });
+    }
+
+    /**
+     * @param openAlerts {@code [busId, AlertType]} pairs of every open alert
+     */
+    public void rebuild(List<Object[]> openAlerts) {
+        openTypes.clear();
+        for (Object[] alert : openAlerts) {
+            tryOpen((Long) alert[0], (AlertType) alert[1]);
+        }
+        log.info("Open alert index rebuilt with {} buses", openTypes.size());
+    }
+
+    private static int bit(AlertType type) {
+        return 1 << type.ordinal();
+    }
+}
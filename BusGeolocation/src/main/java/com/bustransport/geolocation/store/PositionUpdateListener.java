@@ -0,0 +1,18 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.enums.PositionSource;
+
+/**
+ * Notified after {@link FleetPositionStore} accepts a newer fix for a bus. Called on the
+ * ingesting thread outside the store lock and after the fix has been committed, so
+ * implementations must be quick and thread-safe, and any writes of their own need their own
+ * transaction. Absent optional values are passed as {@link Double#NaN}. Fixes re-emitted from
+ * stored history are passed as {@link PositionSource#REPLAY}; anything that accumulates or
+ * persists state from fixes must only take {@link PositionSource#LIVE} ones.
+ */
+public interface PositionUpdateListener {
+
+    void onPositionUpdate(long busId, long routeId, String busNumber,
+                          double latitude, double longitude, double speed, double heading,
+                          long recordedAtMillis, PositionSource source);
+}
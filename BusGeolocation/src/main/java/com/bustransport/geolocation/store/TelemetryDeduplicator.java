@@ -0,0 +1,148 @@
+package com.bustransport.geolocation.store;
+
+import com.bustransport.geolocation.enums.IngestStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Drops resent and stale fixes before they reach the database. Each device (tracked by the bus
+ * it is bound to) has a high-water mark, the newest fix time admitted, and remembers the times
+ * of its last {@code history-size} admitted fixes. A fix is:
+ * <ul>
+ *     <li>admitted if newer than the mark;</li>
+ *     <li>a duplicate if its time was already admitted;</li>
+ *     <li>admitted as reordered if it is late by no more than {@code reorder-window-seconds} and
+ *     not older than the remembered times, so it can still be told apart from a duplicate;</li>
+ *     <li>stale otherwise.</li>
+ * </ul>
+ * Reordered fixes are stored in history, but never move the latest position back.
+ */
+@Component
+public class TelemetryDeduplicator {
+
+    private final boolean enabled;
+    private final long reorderWindowMillis;
+    private final int historySize;
+    private final Counter duplicateCounter;
+    private final Counter staleCounter;
+    private final Counter reorderedCounter;
+
+    private final Map<Long, DeviceWindow> windows = new ConcurrentHashMap<>();
+
+    public TelemetryDeduplicator(MeterRegistry meterRegistry,
+                                 @Value("${ingest.dedupe.enabled:true}") boolean enabled,
+                                 @Value("${ingest.dedupe.reorder-window-seconds:60}") long reorderWindowSeconds,
+                                 @Value("${ingest.dedupe.history-size:32}") int historySize) {
+        this.enabled = enabled;
+        this.reorderWindowMillis = reorderWindowSeconds * 1000;
+        this.historySize = historySize;
+        this.duplicateCounter = meterRegistry.counter("telemetry.dedupe.fixes", "outcome", "duplicate");
+        this.staleCounter = meterRegistry.counter("telemetry.dedupe.fixes", "outcome", "stale");
+        this.reorderedCounter = meterRegistry.counter("telemetry.dedupe.fixes", "outcome", "reordered");
+    }
+
+    /**
+     * Classifies a fix and, if it is admitted, records it.
+     *
+     * @return {@link IngestStatus#ACCEPTED}, {@link IngestStatus#DUPLICATE} or {@link IngestStatus#STALE}
+     */
+    public IngestStatus admit(long busId, long recordedAtMillis) {
+        if (!enabled) {
+            return IngestStatus.ACCEPTED;
+        }
+        DeviceWindow window = windows.computeIfAbsent(busId, id -> new DeviceWindow(historySize));
+        synchronized (window) {
+            if (window.count == 0 || recordedAtMillis > window.highWaterMark) {
+                window.remember(recordedAtMillis);
+                window.highWaterMark = recordedAtMillis;
+                return IngestStatus.ACCEPTED;
+            }
+            if (window.contains(recordedAtMillis)) {
+                duplicateCounter.increment();
+                return IngestStatus.DUPLICATE;
+            }
+            if (recordedAtMillis < window.highWaterMark - reorderWindowMillis
+                    || (window.count == historySize && recordedAtMillis < window.oldest())) {
+                staleCounter.increment();
+                return IngestStatus.STALE;
+            }
+            window.remember(recordedAtMillis);
+            if (recordedAtMillis < window.highWaterMark) {
+                reorderedCounter.increment();
+            }
+            return IngestStatus.ACCEPTED;
+        }
+    }
+
+    /**
+     * Undoes {@link #admit} for a fix that was not stored after all, so a retry of it is not
+     * taken for a duplicate.
+     */
+    public void forget(long busId, long recordedAtMillis) {
+        DeviceWindow window = windows.get(busId);
+        if (window == null) {
+            return;
+        }
+        synchronized (window) {
+            window.remove(recordedAtMillis);
+        }
+    }
+
+    /**
+     * Admitted fix times of one device, in the order they were admitted, in a ring of fixed size.
+     */
+    private static final class DeviceWindow {
+
+        private final long[] times;
+        private int start;
+        private int count;
+        private long highWaterMark;
+
+        private DeviceWindow(int size) {
+            this.times = new long[size];
+        }
+
+        private void remember(long time) {
+            if (count == times.length) {
+                start = (start + 1) % times.length;
+                count--;
+            }
+            times[(start + count) % times.length] = time;
+            count++;
+        }
+
+        private boolean contains(long time) {
+            for (int i = 0; i < count; i++) {
+                if (times[(start + i) % times.length] == time) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long oldest() {
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                oldest = Math.min(oldest, times[(start + i) % times.length]);
+            }
+            return oldest;
+        }
+
+        private void remove(long time) {
+            for (int i = 0; i < count; i++) {
+                if (times[(start + i) % times.length] == time) {
+                    for (int j = i; j < count - 1; j++) {
+                        times[(start + j) % times.length] = times[(start + j + 1) % times.length];
+                    }
+                    count--;
+                    return;
+                }
+            }
+        }
+    }
+}
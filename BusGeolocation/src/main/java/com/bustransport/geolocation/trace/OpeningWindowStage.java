@@ -0,0 +1,85 @@
+package com.bustransport.geolocation.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opening-window line simplification: the window grows from the last kept point (the anchor)
+ * while every point inside it stays within the tolerance of the line from the anchor to the
+ * newest point. When one does not, the point before the newest is kept and becomes the anchor.
+ * Only the window is buffered, and it is capped at {@value #MAX_WINDOW} points, so long
+ * straight runs cost bounded memory and time per point.
+ */
+class OpeningWindowStage<T> implements TrajectorySimplifier.Stage<T> {
+
+    private static final int MAX_WINDOW = 256;
+
+    private final double tolerance;
+    private final TrajectorySimplifier.Stage<T> next;
+
+    private final double[] xs = new double[MAX_WINDOW];
+    private final double[] ys = new double[MAX_WINDOW];
+    private final List<T> points = new ArrayList<>(MAX_WINDOW);
+
+    private boolean anchored;
+    private double anchorX;
+    private double anchorY;
+
+    OpeningWindowStage(double toleranceMeters, TrajectorySimplifier.Stage<T> next) {
+        this.tolerance = toleranceMeters;
+        this.next = next;
+    }
+
+    @Override
+    public void add(double x, double y, T point) {
+        if (!anchored) {
+            anchor(x, y, point);
+            return;
+        }
+        int size = points.size();
+        for (int i = 0; i < size; i++) {
+            if (offset(xs[i], ys[i], x, y) > tolerance) {
+                anchor(xs[size - 1], ys[size - 1], points.get(size - 1));
+                break;
+            }
+        }
+        if (points.size() == MAX_WINDOW) {
+            anchor(xs[MAX_WINDOW - 1], ys[MAX_WINDOW - 1], points.get(MAX_WINDOW - 1));
+        }
+        xs[points.size()] = x;
+        ys[points.size()] = y;
+        points.add(point);
+    }
+
+    @Override
+    public void finish() {
+        if (!points.isEmpty()) {
+            int last = points.size() - 1;
+            next.add(xs[last], ys[last], points.get(last));
+            points.clear();
+        }
+        next.finish();
+    }
+
+    private void anchor(double x, double y, T point) {
+        next.add(x, y, point);
+        anchored = true;
+        anchorX = x;
+        anchorY = y;
+        points.clear();
+    }
+
+    /**
+     * Distance from (px, py) to the segment from the anchor to (x, y).
+     */
+    private double offset(double px, double py, double x, double y) {
+        double dx = x - anchorX;
+        double dy = y - anchorY;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - anchorX) * dx + (py - anchorY) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double ex = anchorX + t * dx - px;
+        double ey = anchorY + t * dy - py;
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+}
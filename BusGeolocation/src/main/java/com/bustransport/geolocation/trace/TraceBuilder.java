@@ -0,0 +1,130 @@
+package com.bustransport.geolocation.trace;
+
+import com.bustransport.geolocation.entity.Bus;
+import com.bustransport.geolocation.entity.LocationTrace;
+import com.bustransport.geolocation.geo.GeoUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static com.bustransport.geolocation.store.FleetPositionStore.toLocalDateTime;
+
+/**
+ * Compacts the fixes of one trip, supplied in time order, into a single {@link LocationTrace}.
+ * Distance, stops and average speed are kept up to date as fixes are added. A stop is counted
+ * once the bus, after having moved, stays below {@code stopSpeedKmh} for {@code minStopMillis};
+ * fixes without a reported speed use the speed implied by the distance from the previous fix.
+ */
+public class TraceBuilder {
+
+    public static final double DEFAULT_STOP_SPEED_KMH = 3;
+    public static final long DEFAULT_MIN_STOP_MILLIS = 20_000;
+
+    private final TraceCodec.Encoder encoder = new TraceCodec.Encoder();
+    private final double stopSpeedKmh;
+    private final long minStopMillis;
+
+    private double distanceMeters;
+    private long startMillis;
+    private long endMillis;
+    private double lastLatitude;
+    private double lastLongitude;
+
+    private int stops;
+    private boolean moved;
+    private boolean stopped;
+    private long slowSinceMillis = -1;
+
+    public TraceBuilder() {
+        this(DEFAULT_STOP_SPEED_KMH, DEFAULT_MIN_STOP_MILLIS);
+    }
+
+    public TraceBuilder(double stopSpeedKmh, long minStopMillis) {
+        this.stopSpeedKmh = stopSpeedKmh;
+        this.minStopMillis = minStopMillis;
+    }
+
+    public void add(double latitude, double longitude, long recordedAtMillis, double speed) {
+        double effectiveSpeed = speed;
+        if (encoder.getCount() == 0) {
+            startMillis = recordedAtMillis;
+        } else {
+            double stepMeters = GeoUtils.haversineMeters(lastLatitude, lastLongitude, latitude, longitude);
+            distanceMeters += stepMeters;
+            if (Double.isNaN(speed) && recordedAtMillis > endMillis) {
+                effectiveSpeed = stepMeters / (recordedAtMillis - endMillis) * 3_600;
+            }
+        }
+        encoder.add(latitude, longitude, recordedAtMillis, speed);
+        endMillis = recordedAtMillis;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        trackStops(recordedAtMillis, effectiveSpeed);
+    }
+
+    private void trackStops(long recordedAtMillis, double speed) {
+        if (Double.isNaN(speed)) {
+            return;
+        }
+        if (speed >= stopSpeedKmh) {
+            moved = true;
+            stopped = false;
+            slowSinceMillis = -1;
+            return;
+        }
+        if (slowSinceMillis < 0) {
+            slowSinceMillis = recordedAtMillis;
+        }
+        if (moved && !stopped && recordedAtMillis - slowSinceMillis >= minStopMillis) {
+            stopped = true;
+            stops++;
+        }
+    }
+
+    public int getPointCount() {
+        return encoder.getCount();
+    }
+
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    public int getStops() {
+        return stops;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Average speed over the trip so far in km/h, or NaN before any time has elapsed.
+     */
+    public double getAverageSpeedKmh() {
+        double hours = (endMillis - startMillis) / 3_600_000.0;
+        return hours > 0 ? distanceMeters / 1000 / hours : Double.NaN;
+    }
+
+    public LocationTrace build(Bus bus, Long routeId) {
+        double averageSpeedKmh = getAverageSpeedKmh();
+        BigDecimal averageSpeed = !Double.isNaN(averageSpeedKmh)
+            ? BigDecimal.valueOf(averageSpeedKmh).setScale(2, RoundingMode.HALF_UP)
+            : null;
+
+        return LocationTrace.builder()
+            .bus(bus)
+            .routeId(routeId)
+            .encodedPoints(encoder.toByteArray())
+            .pointCount(encoder.getCount())
+            .startTime(toLocalDateTime(startMillis))
+            .endTime(toLocalDateTime(endMillis))
+            .totalDistance(BigDecimal.valueOf(distanceMeters / 1000).setScale(2, RoundingMode.HALF_UP))
+            .totalStops(stops)
+            .averageSpeed(averageSpeed)
+            .build();
+    }
+}
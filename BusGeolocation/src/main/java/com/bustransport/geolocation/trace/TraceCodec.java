@@ -0,0 +1,189 @@
+package com.bustransport.geolocation.trace;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact binary encoding of a trip's points. Coordinates are stored in 1e-7 degrees, speed in
+ * 1/100 km/h and time in milliseconds, each as the zigzag varint delta from the previous point:
+ * <pre>
+ * version(1) | count(varint) | lat lon time speed (first point, then deltas) ...
+ * </pre>
+ */
+public final class TraceCodec {
+
+    public static final int VERSION = 1;
+
+    private static final double COORDINATE_SCALE = 1e7;
+    private static final double SPEED_SCALE = 100;
+
+    private TraceCodec() {
+    }
+
+    /**
+     * Appends points one at a time; the encoded form is available at any point via {@link #toByteArray()}.
+     */
+    public static class Encoder {
+
+        private byte[] buffer;
+        private int length;
+        private int count;
+        private long lastLatitude;
+        private long lastLongitude;
+        private long lastTime;
+        private long lastSpeed;
+
+        public Encoder() {
+            this(256);
+        }
+
+        public Encoder(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+        }
+
+        public void add(double latitude, double longitude, long recordedAtMillis, double speed) {
+            long lat = Math.round(latitude * COORDINATE_SCALE);
+            long lon = Math.round(longitude * COORDINATE_SCALE);
+            long spd = Double.isNaN(speed) ? 0 : Math.round(speed * SPEED_SCALE);
+
+            ensureCapacity(4 * 10);
+            writeZigZag(lat - lastLatitude);
+            writeZigZag(lon - lastLongitude);
+            writeZigZag(recordedAtMillis - lastTime);
+            writeZigZag(spd - lastSpeed);
+
+            lastLatitude = lat;
+            lastLongitude = lon;
+            lastTime = recordedAtMillis;
+            lastSpeed = spd;
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public byte[] toByteArray() {
+            byte[] header = new byte[1 + 5];
+            header[0] = (byte) VERSION;
+            int headerLength = 1 + writeVarint(header, 1, count);
+
+            byte[] encoded = new byte[headerLength + length];
+            System.arraycopy(header, 0, encoded, 0, headerLength);
+            System.arraycopy(buffer, 0, encoded, headerLength, length);
+            return encoded;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        private void writeZigZag(long value) {
+            length += writeVarint(buffer, length, (value << 1) ^ (value >> 63));
+        }
+    }
+
+    public static byte[] encode(Iterable<TracePoint> points) {
+        Encoder encoder = new Encoder();
+        for (TracePoint point : points) {
+            encoder.add(point.getLatitude(), point.getLongitude(), point.getRecordedAtMillis(), point.getSpeed());
+        }
+        return encoder.toByteArray();
+    }
+
+    public static int pointCount(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            return 0;
+        }
+        checkVersion(encoded);
+        return (int) new Reader(encoded, 1).readVarint();
+    }
+
+    /**
+     * Decodes points lazily, one per {@link Iterator#next()} call.
+     */
+    public static Iterator<TracePoint> decode(byte[] encoded) {
+        if (encoded == null || encoded.length == 0) {
+            return Collections.emptyIterator();
+        }
+        checkVersion(encoded);
+        Reader reader = new Reader(encoded, 1);
+        int count = (int) reader.readVarint();
+
+        return new Iterator<>() {
+            private int remaining = count;
+            private long latitude;
+            private long longitude;
+            private long time;
+            private long speed;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public TracePoint next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                latitude += reader.readZigZag();
+                longitude += reader.readZigZag();
+                time += reader.readZigZag();
+                speed += reader.readZigZag();
+                remaining--;
+                return new TracePoint(latitude / COORDINATE_SCALE, longitude / COORDINATE_SCALE,
+                    time, speed / SPEED_SCALE);
+            }
+        };
+    }
+
+    private static void checkVersion(byte[] encoded) {
+        if (encoded[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported trace encoding version: " + encoded[0]);
+        }
+    }
+
+    private static int writeVarint(byte[] target, int offset, long value) {
+        int written = 0;
+        while ((value & ~0x7FL) != 0) {
+            target[offset + written++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[offset + written++] = (byte) value;
+        return written;
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+
+        private long readVarint() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+        }
+
+        private long readZigZag() {
+            long raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+    }
+}
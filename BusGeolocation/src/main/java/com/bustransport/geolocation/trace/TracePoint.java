@@ -0,0 +1,13 @@
+package com.bustransport.geolocation.trace;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TracePoint {
+    private final double latitude;
+    private final double longitude;
+    private final long recordedAtMillis;
+    private final double speed; // km/h
+}
@@ -0,0 +1,78 @@
+package com.bustransport.geolocation.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simplifies a trajectory supplied one point at a time, in time order, keeping only as many
+ * points as the simplification needs. With a tolerance, points are dropped by an opening-window
+ * pass that keeps every dropped point within {@code toleranceMeters} of the simplified line;
+ * with a point budget, the result is then reduced to {@code maxPoints} by Visvalingam-Whyatt.
+ * The first and last points are always kept.
+ *
+ * @param <T> the point payload returned for the kept points
+ */
+public class TrajectorySimplifier<T> {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    private final Stage<T> first;
+    private final List<T> kept = new ArrayList<>();
+
+    private boolean started;
+    private double originLatitude;
+    private double originLongitude;
+    private double longitudeScale;
+
+    /**
+     * @param toleranceMeters maximum distance of a dropped point from the simplified line, or null
+     * @param maxPoints       maximum number of points kept, or null
+     */
+    public TrajectorySimplifier(Double toleranceMeters, Integer maxPoints) {
+        if (toleranceMeters != null && toleranceMeters <= 0) {
+            throw new IllegalArgumentException("tolerance must be positive");
+        }
+        if (maxPoints != null && maxPoints < 2) {
+            throw new IllegalArgumentException("maxPoints must be at least 2");
+        }
+        Stage<T> stage = (x, y, point) -> kept.add(point);
+        if (maxPoints != null) {
+            stage = new VisvalingamStage<>(maxPoints, stage);
+        }
+        if (toleranceMeters != null) {
+            stage = new OpeningWindowStage<>(toleranceMeters, stage);
+        }
+        this.first = stage;
+    }
+
+    public void add(double latitude, double longitude, T point) {
+        if (!started) {
+            started = true;
+            originLatitude = latitude;
+            originLongitude = longitude;
+            longitudeScale = Math.cos(Math.toRadians(latitude)) * METERS_PER_DEGREE;
+        }
+        first.add((longitude - originLongitude) * longitudeScale,
+            (latitude - originLatitude) * METERS_PER_DEGREE, point);
+    }
+
+    /**
+     * Flushes the pending points and returns the kept ones in their original order.
+     */
+    public List<T> finish() {
+        first.finish();
+        return kept;
+    }
+
+    /**
+     * One pass of the pipeline, fed with points projected to meters. A stage passes the points
+     * it keeps on to the next one, and flushes them on {@link #finish()}.
+     */
+    interface Stage<T> {
+
+        void add(double x, double y, T point);
+
+        default void finish() {
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.bustransport.geolocation.trace;
+
+import com.bustransport.geolocation.entity.LocationTrace;
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.geo.GeoUtils;
+import com.bustransport.geolocation.repository.BusRepository;
+import com.bustransport.geolocation.repository.LocationTraceRepository;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a {@link LocationTrace} per trip from fixes as the {@link FleetPositionStore} accepts
+ * them, so that trip distance, stops and average speed never need a rescan of raw history.
+ *
+ * <p>A trip ends when the bus changes route, when no fix arrives for {@code trip.max-gap-minutes},
+ * or when the bus stands still for {@code trip.layover-minutes}; in the last case the trip ends
+ * on arrival and the next one starts on departure. While the bus stands still only the arrival
+ * and departure fixes are added, which keeps GPS jitter out of the distance. Trips shorter than
+ * {@code trip.min-points} fixes or {@code trip.min-distance-meters} are discarded. Finished
+ * trips are saved in the background every {@code trip.flush-interval-ms}. Replayed fixes are
+ * ignored, since their trips were already recorded when the fixes were live.
+ */
+@Component
+@Slf4j
+public class TripAccumulator implements PositionUpdateListener, SmartLifecycle {
+
+    private final LocationTraceRepository traceRepository;
+    private final BusRepository busRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final double stopSpeedKmh;
+    private final long minStopMillis;
+    private final long layoverMillis;
+    private final long maxGapMillis;
+    private final int minPoints;
+    private final double minDistanceMeters;
+    private final Counter completedCounter;
+    private final Counter discardedCounter;
+
+    private final Map<Long, Trip> trips = new ConcurrentHashMap<>();
+    private final Queue<FinishedTrip> finished = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+
+    public TripAccumulator(FleetPositionStore positionStore,
+                           LocationTraceRepository traceRepository,
+                           BusRepository busRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${trip.enabled:true}") boolean enabled,
+                           @Value("${trip.stop-speed-kmh:3}") double stopSpeedKmh,
+                           @Value("${trip.min-stop-seconds:20}") long minStopSeconds,
+                           @Value("${trip.layover-minutes:10}") long layoverMinutes,
+                           @Value("${trip.max-gap-minutes:15}") long maxGapMinutes,
+                           @Value("${trip.min-points:10}") int minPoints,
+                           @Value("${trip.min-distance-meters:500}") double minDistanceMeters) {
+        this.traceRepository = traceRepository;
+        this.busRepository = busRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.stopSpeedKmh = stopSpeedKmh;
+        this.minStopMillis = TimeUnit.SECONDS.toMillis(minStopSeconds);
+        this.layoverMillis = TimeUnit.MINUTES.toMillis(layoverMinutes);
+        this.maxGapMillis = TimeUnit.MINUTES.toMillis(maxGapMinutes);
+        this.minPoints = minPoints;
+        this.minDistanceMeters = minDistanceMeters;
+        this.completedCounter = meterRegistry.counter("trip.traces", "outcome", "saved");
+        this.discardedCounter = meterRegistry.counter("trip.traces", "outcome", "discarded");
+        meterRegistry.gaugeMapSize("trip.buses", Tags.empty(), trips);
+        positionStore.addListener(this);
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        if (!enabled || source != PositionSource.LIVE) {
+            return;
+        }
+        Trip trip = trips.computeIfAbsent(busId, id -> new Trip());
+        synchronized (trip) {
+            if (recordedAtMillis <= trip.lastMillis) {
+                return;
+            }
+            if (trip.lastMillis > 0 && (trip.routeId != routeId || recordedAtMillis - trip.lastMillis > maxGapMillis)) {
+                finish(busId, trip);
+                trip.stationarySinceMillis = -1;
+                trip.holding = false;
+            }
+
+            double effectiveSpeed = speed;
+            if (Double.isNaN(speed) && trip.lastMillis > 0) {
+                effectiveSpeed = GeoUtils.haversineMeters(trip.lastLatitude, trip.lastLongitude, latitude, longitude)
+                    / (recordedAtMillis - trip.lastMillis) * 3_600;
+            }
+            trip.routeId = routeId;
+            trip.lastMillis = recordedAtMillis;
+            trip.lastLatitude = latitude;
+            trip.lastLongitude = longitude;
+
+            if (effectiveSpeed < stopSpeedKmh) {
+                standStill(busId, trip, latitude, longitude, speed, recordedAtMillis);
+            } else {
+                move(trip, latitude, longitude, speed, recordedAtMillis);
+            }
+        }
+    }
+
+    private void standStill(long busId, Trip trip, double latitude, double longitude, double speed,
+                            long recordedAtMillis) {
+        if (trip.stationarySinceMillis < 0) {
+            trip.stationarySinceMillis = recordedAtMillis;
+            if (trip.builder != null) {
+                // Arrival
+                trip.builder.add(latitude, longitude, recordedAtMillis, speed);
+                return;
+            }
+        }
+        trip.hold(latitude, longitude, speed, recordedAtMillis);
+        if (trip.builder != null && recordedAtMillis - trip.stationarySinceMillis >= layoverMillis) {
+            finish(busId, trip);
+        }
+    }
+
+    private void move(Trip trip, double latitude, double longitude, double speed, long recordedAtMillis) {
+        if (trip.builder == null) {
+            trip.builder = new TraceBuilder(stopSpeedKmh, minStopMillis);
+        }
+        if (trip.holding) {
+            // Departure
+            trip.builder.add(trip.heldLatitude, trip.heldLongitude, trip.heldMillis, trip.heldSpeed);
+            trip.holding = false;
+        }
+        trip.stationarySinceMillis = -1;
+        trip.builder.add(latitude, longitude, recordedAtMillis, speed);
+    }
+
+    private void finish(long busId, Trip trip) {
+        TraceBuilder builder = trip.builder;
+        trip.builder = null;
+        if (builder == null) {
+            return;
+        }
+        if (builder.getPointCount() < minPoints || builder.getDistanceMeters() < minDistanceMeters) {
+            discardedCounter.increment();
+            return;
+        }
+        finished.add(new FinishedTrip(busId, trip.routeId, builder));
+    }
+
+    /**
+     * Ends the trips of buses that stopped reporting, and forgets buses idle for longer.
+     */
+    @Scheduled(fixedDelayString = "${trip.sweep-interval-ms:60000}")
+    public void sweep() {
+        long cutoff = FleetPositionStore.toEpochMillis(LocalDateTime.now()) - maxGapMillis;
+        trips.forEach((busId, trip) -> {
+            synchronized (trip) {
+                if (trip.lastMillis >= cutoff) {
+                    return;
+                }
+                if (trip.builder != null) {
+                    finish(busId, trip);
+                } else {
+                    trips.remove(busId, trip);
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${trip.flush-interval-ms:5000}")
+    public void flush() {
+        List<FinishedTrip> batch = new ArrayList<>();
+        FinishedTrip next;
+        while ((next = finished.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<LocationTrace> traces = new ArrayList<>(batch.size());
+                for (FinishedTrip trip : batch) {
+                    traces.add(trip.builder.build(busRepository.getReferenceById(trip.busId), trip.routeId));
+                }
+                traceRepository.saveAll(traces);
+            });
+            completedCounter.increment(batch.size());
+            log.debug("Saved {} trip traces", batch.size());
+        } catch (Exception e) {
+            log.error("Error saving {} trip traces, keeping them for the next flush", batch.size(), e);
+            finished.addAll(batch);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        // Save trips in progress rather than lose them with the in-memory state
+        running = false;
+        trips.forEach((busId, trip) -> {
+            synchronized (trip) {
+                finish(busId, trip);
+            }
+        });
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop after the write-behind pipeline, so trips include the fixes it drains on shutdown
+        return DEFAULT_PHASE - 6144;
+    }
+
+    private static final class Trip {
+
+        private long routeId;
+        private long lastMillis;
+        private double lastLatitude;
+        private double lastLongitude;
+        private TraceBuilder builder;
+
+        // Latest fix while standing still, added as the departure point once the bus moves
+        private long stationarySinceMillis = -1;
+        private boolean holding;
+        private double heldLatitude;
+        private double heldLongitude;
+        private double heldSpeed;
+        private long heldMillis;
+
+        private void hold(double latitude, double longitude, double speed, long recordedAtMillis) {
+            holding = true;
+            heldLatitude = latitude;
+            heldLongitude = longitude;
+            heldSpeed = speed;
+            heldMillis = recordedAtMillis;
+        }
+    }
+
+    private record FinishedTrip(long busId, long routeId, TraceBuilder builder) {
+    }
+}
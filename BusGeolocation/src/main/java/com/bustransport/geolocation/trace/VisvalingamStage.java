@@ -0,0 +1,118 @@
+package com.bustransport.geolocation.trace;
+
+import java.util.PriorityQueue;
+
+/**
+ * Visvalingam-Whyatt simplification down to a fixed number of points, run as the points
+ * arrive: whenever more than {@code maxPoints} are held, the interior point whose triangle with
+ * its neighbours has the smallest area is removed. Memory is bounded by {@code maxPoints}
+ * rather than by the length of the input.
+ */
+class VisvalingamStage<T> implements TrajectorySimplifier.Stage<T> {
+
+    private final int maxPoints;
+    private final TrajectorySimplifier.Stage<T> next;
+    // Entries go stale when a node's area changes or it is removed; they are skipped on poll
+    private final PriorityQueue<Entry<T>> queue = new PriorityQueue<>();
+
+    private Node<T> head;
+    private Node<T> tail;
+    private int count;
+
+    VisvalingamStage(int maxPoints, TrajectorySimplifier.Stage<T> next) {
+        this.maxPoints = maxPoints;
+        this.next = next;
+    }
+
+    @Override
+    public void add(double x, double y, T point) {
+        Node<T> node = new Node<>(x, y, point);
+        if (head == null) {
+            head = node;
+        } else {
+            tail.next = node;
+            node.prev = tail;
+            // The previous tail now has two neighbours and can be ranked
+            rank(tail, 0);
+        }
+        tail = node;
+        count++;
+
+        while (count > maxPoints) {
+            Entry<T> entry = queue.poll();
+            Node<T> victim = entry.node;
+            if (victim.removed || victim.area != entry.area) {
+                continue;
+            }
+            victim.removed = true;
+            victim.prev.next = victim.next;
+            victim.next.prev = victim.prev;
+            count--;
+            // Neighbours never rank below the point removed before them, as in the original algorithm
+            rank(victim.prev, victim.area);
+            rank(victim.next, victim.area);
+        }
+
+        if (queue.size() > 4 * maxPoints + 16) {
+            rebuildQueue();
+        }
+    }
+
+    @Override
+    public void finish() {
+        for (Node<T> node = head; node != null; node = node.next) {
+            next.add(node.x, node.y, node.point);
+        }
+        head = null;
+        tail = null;
+        count = 0;
+        queue.clear();
+        next.finish();
+    }
+
+    private void rank(Node<T> node, double floor) {
+        if (node.prev == null || node.next == null) {
+            return;
+        }
+        node.area = Math.max(floor, triangleArea(node.prev, node, node.next));
+        queue.add(new Entry<>(node, node.area));
+    }
+
+    private void rebuildQueue() {
+        queue.clear();
+        for (Node<T> node = head; node != null; node = node.next) {
+            if (node.prev != null && node.next != null) {
+                queue.add(new Entry<>(node, node.area));
+            }
+        }
+    }
+
+    private static double triangleArea(Node<?> a, Node<?> b, Node<?> c) {
+        return Math.abs((b.x - a.x) * (c.y - a.y) - (c.x - a.x) * (b.y - a.y)) / 2;
+    }
+
+    private static final class Node<T> {
+
+        private final double x;
+        private final double y;
+        private final T point;
+        private Node<T> prev;
+        private Node<T> next;
+        private double area;
+        private boolean removed;
+
+        private Node(double x, double y, T point) {
+            this.x = x;
+            this.y = y;
+            this.point = point;
+        }
+    }
+
+    private record Entry<T>(Node<T> node, double area) implements Comparable<Entry<T>> {
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            return Double.compare(area, other.area);
+        }
+    }
+}
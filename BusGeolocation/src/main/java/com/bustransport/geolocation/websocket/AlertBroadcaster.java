@@ -0,0 +1,38 @@
+package com.bustransport.geolocation.websocket;
+
+import com.bustransport.geolocation.dto.response.AlertEventDTO;
+import com.bustransport.geolocation.entity.GeofenceAlert;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes newly raised alerts to {@value #ALERT_TOPIC}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlertBroadcaster {
+
+    public static final String ALERT_TOPIC = "/topic/alerts";
+
+    private final EncodedMessagePublisher publisher;
+
+    public void publish(GeofenceAlert alert) {
+        try {
+            publisher.send(ALERT_TOPIC, AlertEventDTO.builder()
+                .id(alert.getId())
+                .busId(alert.getBus().getId())
+                .busNumber(alert.getBus().getBusNumber())
+                .alertType(alert.getAlertType())
+                .severity(alert.getSeverity())
+                .latitude(alert.getLatitude().doubleValue())
+                .longitude(alert.getLongitude().doubleValue())
+                .description(alert.getDescription())
+                .triggeredAt(alert.getTriggeredAt())
+                .build());
+        } catch (Exception e) {
+            log.error("Error broadcasting alert {}", alert.getId(), e);
+        }
+    }
+}
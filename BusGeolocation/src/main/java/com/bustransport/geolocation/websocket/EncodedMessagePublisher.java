@@ -0,0 +1,62 @@
+package com.bustransport.geolocation.websocket;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends already-encoded JSON payloads straight to the broker channel. Payloads are encoded once
+ * with a cached writer and headers are built once per destination, so a send costs neither
+ * message conversion nor header copying, and the broker hands the same bytes to every subscriber.
+ */
+@Component
+public class EncodedMessagePublisher {
+
+    private final MessageChannel brokerChannel;
+    private final ObjectMapper objectMapper;
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final Map<String, MessageHeaders> headersByDestination = new ConcurrentHashMap<>();
+
+    public EncodedMessagePublisher(@Qualifier("brokerChannel") MessageChannel brokerChannel,
+                                   ObjectMapper objectMapper) {
+        this.brokerChannel = brokerChannel;
+        this.objectMapper = objectMapper;
+    }
+
+    public byte[] encode(Object payload) {
+        try {
+            return writers.computeIfAbsent(payload.getClass(), objectMapper::writerFor).writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not encode " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    public void send(String destination, Object payload) {
+        send(destination, encode(payload));
+    }
+
+    public void send(String destination, byte[] payload) {
+        brokerChannel.send(MessageBuilder.createMessage(payload, headersFor(destination)));
+    }
+
+    private MessageHeaders headersFor(String destination) {
+        return headersByDestination.computeIfAbsent(destination, key -> {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(key);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            accessor.setImmutable();
+            return accessor.getMessageHeaders();
+        });
+    }
+}
@@ -0,0 +1,312 @@
+package com.bustransport.geolocation.websocket;
+
+import com.bustransport.geolocation.dto.response.LocationDeltaDTO;
+import com.bustransport.geolocation.dto.response.LocationFrameDTO;
+import com.bustransport.geolocation.enums.PositionSource;
+import com.bustransport.geolocation.sse.LocationStreamHub;
+import com.bustransport.geolocation.store.FleetPositionStore;
+import com.bustransport.geolocation.store.PositionUpdateListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces position updates from the {@link FleetPositionStore} and publishes them once per tick:
+ * one frame to the fleet topic, one per route and one per changed bus. Each frame holds only the
+ * fields that changed since the previous broadcast, except every {@code keyframe-interval} ticks
+ * when the full state is sent so late subscribers can catch up. Buses that have not reported for
+ * {@code stale-after-seconds} are left out of keyframes from then on, so a keyframe only carries
+ * the buses still around. Fleet and route frames are also handed, already encoded, to the
+ * {@link LocationStreamHub} for Server-Sent Events clients.
+ *
+ * <p>Replayed fixes are published the same way under {@value #REPLAY_TOPIC_PREFIX}, with their
+ * own state, so that a replay never shows up on, or disturbs the deltas of, the live topics.
+ */
+@Component
+@Slf4j
+public class LocationBroadcaster implements PositionUpdateListener {
+
+    public static final String FLEET_TOPIC = "/topic/bus-locations";
+    public static final String BUS_TOPIC_PREFIX = "/topic/bus/";
+    public static final String ROUTE_TOPIC_PREFIX = "/topic/route/";
+    public static final String REPLAY_TOPIC_PREFIX = "/topic/replay/";
+
+    private final EncodedMessagePublisher publisher;
+    private final LocationStreamHub streamHub;
+    private final int keyframeInterval;
+    private final long staleAfterMillis;
+    private final Counter framesCounter;
+    private final Counter updatesCounter;
+
+    private final Channel live = new Channel(FLEET_TOPIC, BUS_TOPIC_PREFIX, ROUTE_TOPIC_PREFIX);
+    private final Channel replay = new Channel(replayTopic(FLEET_TOPIC), replayTopic(BUS_TOPIC_PREFIX),
+        replayTopic(ROUTE_TOPIC_PREFIX));
+
+    public LocationBroadcaster(FleetPositionStore positionStore,
+                               EncodedMessagePublisher publisher,
+                               LocationStreamHub streamHub,
+                               MeterRegistry meterRegistry,
+                               @Value("${websocket.broadcast.keyframe-interval:30}") int keyframeInterval,
+                               @Value("${websocket.broadcast.stale-after-seconds:300}") long staleAfterSeconds) {
+        this.publisher = publisher;
+        this.streamHub = streamHub;
+        this.keyframeInterval = keyframeInterval;
+        this.staleAfterMillis = TimeUnit.SECONDS.toMillis(staleAfterSeconds);
+        this.framesCounter = meterRegistry.counter("websocket.broadcast.frames");
+        this.updatesCounter = meterRegistry.counter("websocket.broadcast.updates");
+        positionStore.addListener(this);
+    }
+
+    /**
+     * The replay counterpart of a live topic or topic prefix.
+     */
+    public static String replayTopic(String topic) {
+        return REPLAY_TOPIC_PREFIX + topic.substring("/topic/".length());
+    }
+
+    @Override
+    public void onPositionUpdate(long busId, long routeId, String busNumber,
+                                 double latitude, double longitude, double speed, double heading,
+                                 long recordedAtMillis, PositionSource source) {
+        Channel channel = source == PositionSource.REPLAY ? replay : live;
+        channel.update(busId, routeId, busNumber, latitude, longitude, speed, heading, recordedAtMillis);
+    }
+
+    @Scheduled(fixedRateString = "${websocket.broadcast.interval-ms:1000}")
+    public void broadcast() {
+        live.broadcast();
+        replay.broadcast();
+    }
+
+    private void send(String destination, long frameSequence, Long previousSequence, boolean keyframe,
+                      List<LocationDeltaDTO> updates, boolean stream) {
+        byte[] payload = publisher.encode(LocationFrameDTO.builder()
+            .sequence(frameSequence)
+            .previousSequence(previousSequence)
+            .keyframe(keyframe)
+            .updates(updates)
+            .build());
+        publisher.send(destination, payload);
+        if (stream) {
+            streamHub.publish(destination, frameSequence, keyframe, payload);
+        }
+        framesCounter.increment();
+        updatesCounter.increment(updates.size());
+    }
+
+    /**
+     * Pending updates and last broadcast state of one set of topics.
+     */
+    private final class Channel {
+
+        private final String fleetTopic;
+        private final String busTopicPrefix;
+        private final String routeTopicPrefix;
+
+        private final Object pendingLock = new Object();
+        private Map<Long, BroadcastPosition> pending = new HashMap<>();
+        private Map<Long, BroadcastPosition> spare = new HashMap<>();
+
+        // Only touched by the broadcast thread
+        private final Map<Long, BroadcastPosition> lastSent = new HashMap<>();
+        private final Map<String, Long> lastSequenceByTopic = new HashMap<>();
+        private long sequence;
+
+        private Channel(String fleetTopic, String busTopicPrefix, String routeTopicPrefix) {
+            this.fleetTopic = fleetTopic;
+            this.busTopicPrefix = busTopicPrefix;
+            this.routeTopicPrefix = routeTopicPrefix;
+        }
+
+        private void update(long busId, long routeId, String busNumber, double latitude, double longitude,
+                            double speed, double heading, long recordedAtMillis) {
+            synchronized (pendingLock) {
+                BroadcastPosition position = pending.get(busId);
+                if (position == null) {
+                    position = new BroadcastPosition();
+                    pending.put(busId, position);
+                }
+                position.set(routeId, busNumber, latitude, longitude, speed, heading, recordedAtMillis);
+            }
+        }
+
+        private void broadcast() {
+            Map<Long, BroadcastPosition> changed;
+            synchronized (pendingLock) {
+                changed = pending;
+                pending = spare;
+                spare = changed;
+            }
+            if (changed.isEmpty() && lastSent.isEmpty()) {
+                return;
+            }
+
+            boolean keyframe = keyframeInterval > 0 && sequence % keyframeInterval == 0;
+            long frameSequence = sequence++;
+            try {
+                if (keyframe) {
+                    changed.forEach(this::remember);
+                    publishKeyframe(frameSequence);
+                } else if (!changed.isEmpty()) {
+                    publishDeltas(frameSequence, changed);
+                }
+            } catch (Exception e) {
+                log.error("Error broadcasting locations to {}", fleetTopic, e);
+            } finally {
+                changed.clear();
+            }
+        }
+
+        private void publishDeltas(long frameSequence, Map<Long, BroadcastPosition> changed) {
+            List<LocationDeltaDTO> fleetUpdates = new ArrayList<>(changed.size());
+            Map<Long, List<LocationDeltaDTO>> routeUpdates = new HashMap<>();
+
+            for (Map.Entry<Long, BroadcastPosition> entry : changed.entrySet()) {
+                long busId = entry.getKey();
+                BroadcastPosition current = entry.getValue();
+                BroadcastPosition previous = lastSent.get(busId);
+                if (previous != null && previous.routeId != current.routeId) {
+                    routeUpdates.computeIfAbsent(previous.routeId, id -> new ArrayList<>())
+                        .add(LocationDeltaDTO.builder().busId(busId).recordedAt(current.recordedAt).removed(true).build());
+                }
+                LocationDeltaDTO delta = current.diff(busId, previous);
+                remember(busId, current);
+
+                fleetUpdates.add(delta);
+                routeUpdates.computeIfAbsent(current.routeId, id -> new ArrayList<>()).add(delta);
+                send(busTopicPrefix + busId, frameSequence, false, List.of(delta), false);
+            }
+            routeUpdates.forEach((routeId, updates) ->
+                send(routeTopicPrefix + routeId, frameSequence, false, updates, true));
+            send(fleetTopic, frameSequence, false, fleetUpdates, true);
+        }
+
+        private void send(String topic, long frameSequence, boolean keyframe, List<LocationDeltaDTO> updates,
+                          boolean stream) {
+            Long previousSequence = lastSequenceByTopic.put(topic, frameSequence);
+            LocationBroadcaster.this.send(topic, frameSequence, previousSequence, keyframe, updates, stream);
+        }
+
+        private void publishKeyframe(long frameSequence) {
+            long staleBefore = FleetPositionStore.toEpochMillis(LocalDateTime.now()) - staleAfterMillis;
+            lastSent.entrySet().removeIf(entry -> {
+                boolean stale = entry.getValue().recordedAt < staleBefore;
+                if (stale) {
+                    lastSequenceByTopic.remove(busTopicPrefix + entry.getKey());
+                }
+                return stale;
+            });
+
+            List<LocationDeltaDTO> fleetUpdates = new ArrayList<>(lastSent.size());
+            Map<Long, List<LocationDeltaDTO>> routeUpdates = new HashMap<>();
+
+            for (Map.Entry<Long, BroadcastPosition> entry : lastSent.entrySet()) {
+                long busId = entry.getKey();
+                BroadcastPosition current = entry.getValue();
+                LocationDeltaDTO full = current.diff(busId, null);
+
+                fleetUpdates.add(full);
+                routeUpdates.computeIfAbsent(current.routeId, id -> new ArrayList<>()).add(full);
+                send(busTopicPrefix + busId, frameSequence, true, List.of(full), false);
+            }
+            routeUpdates.forEach((routeId, updates) ->
+                send(routeTopicPrefix + routeId, frameSequence, true, updates, true));
+            send(fleetTopic, frameSequence, true, fleetUpdates, true);
+        }
+
+        private void remember(long busId, BroadcastPosition current) {
+            BroadcastPosition previous = lastSent.get(busId);
+            if (previous == null) {
+                previous = new BroadcastPosition();
+                lastSent.put(busId, previous);
+            }
+            previous.copyFrom(current);
+        }
+    }
+
+    /**
+     * Mutable position rounded to the precision clients see, so that sub-precision jitter
+     * does not produce deltas.
+     */
+    private static final class BroadcastPosition {
+
+        private long routeId;
+        private String busNumber;
+        private double latitude;
+        private double longitude;
+        private double speed;
+        private double heading;
+        private long recordedAt;
+
+        private void set(long routeId, String busNumber, double latitude, double longitude,
+                         double speed, double heading, long recordedAt) {
+            this.routeId = routeId;
+            this.busNumber = busNumber;
+            this.latitude = round(latitude, 1e7);
+            this.longitude = round(longitude, 1e7);
+            this.speed = round(speed, 100);
+            this.heading = round(heading, 100);
+            this.recordedAt = recordedAt;
+        }
+
+        private void copyFrom(BroadcastPosition other) {
+            set(other.routeId, other.busNumber, other.latitude, other.longitude,
+                other.speed, other.heading, other.recordedAt);
+        }
+
+        private LocationDeltaDTO diff(long busId, BroadcastPosition previous) {
+            LocationDeltaDTO.LocationDeltaDTOBuilder delta = LocationDeltaDTO.builder()
+                .busId(busId)
+                .recordedAt(recordedAt);
+            if (previous == null || previous.routeId != routeId) {
+                delta.routeId(routeId);
+            }
+            if (busNumber != null && (previous == null || !busNumber.equals(previous.busNumber))) {
+                delta.busNumber(busNumber);
+            }
+            if (previous == null || Double.compare(previous.latitude, latitude) != 0) {
+                delta.latitude(toNullable(latitude));
+            }
+            if (previous == null || Double.compare(previous.longitude, longitude) != 0) {
+                delta.longitude(toNullable(longitude));
+            }
+            // Named in cleared once no longer reported, so clients drop the old value
+            List<String> cleared = null;
+            if (previous == null || Double.compare(previous.speed, speed) != 0) {
+                if (Double.isNaN(speed)) {
+                    cleared = new ArrayList<>(2);
+                    cleared.add("speed");
+                } else {
+                    delta.speed(speed);
+                }
+            }
+            if (previous == null || Double.compare(previous.heading, heading) != 0) {
+                if (Double.isNaN(heading)) {
+                    cleared = cleared != null ? cleared : new ArrayList<>(1);
+                    cleared.add("heading");
+                } else {
+                    delta.heading(heading);
+                }
+            }
+            return delta.cleared(cleared).build();
+        }
+
+        private static double round(double value, double scale) {
+            return Double.isNaN(value) ? value : Math.round(value * scale) / scale;
+        }
+
+        private static Double toNullable(double value) {
+            return Double.isNaN(value) ? null : value;
+        }
+    }
+}
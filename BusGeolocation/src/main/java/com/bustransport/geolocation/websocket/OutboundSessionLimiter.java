@@ -0,0 +1,339 @@
+package com.bustransport.geolocation.websocket;
+
+import com.bustransport.geolocation.enums.SessionOverflowPolicy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gives every WebSocket session its own bounded outbound buffer. Frames from the broker are
+ * queued and written by a shared writer pool, so a slow client never blocks the outbound channel
+ * threads that serve everyone else; when a session's buffer exceeds
+ * {@code websocket.session.buffer-size-limit} bytes its oldest broker messages are dropped.
+ * With {@link SessionOverflowPolicy#LATEST_PER_DESTINATION}, a message still waiting when a newer
+ * one for the same destination arrives is replaced by it instead. Location frames are deltas, so
+ * either way a lagging client misses changes; it sees that the frame's {@code previousSequence}
+ * is not the last one it received and ignores deltas until the next keyframe. Protocol frames such as receipts and heartbeats are never dropped. A session that
+ * has not caught up for {@code websocket.session.send-time-limit-ms} is closed.
+ */
+@Component
+@Slf4j
+public class OutboundSessionLimiter implements WebSocketHandlerDecoratorFactory, SmartLifecycle {
+
+    private static final String MESSAGE_FRAME = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+
+    private final SessionOverflowPolicy policy;
+    private final long bufferSizeLimit;
+    private final long sendTimeLimitNanos;
+    private final int writerThreads;
+    private final Set<BoundedSession> sessions = ConcurrentHashMap.newKeySet();
+
+    private final Counter evictedCounter;
+    private final Counter replacedCounter;
+    private final Counter closedCounter;
+    private final Timer queueWaitTimer;
+
+    private ExecutorService writers;
+    private volatile boolean running;
+
+    public OutboundSessionLimiter(MeterRegistry meterRegistry,
+                                  @Value("${websocket.session.overflow-policy:DROP_OLDEST}") SessionOverflowPolicy policy,
+                                  @Value("${websocket.session.buffer-size-limit:524288}") long bufferSizeLimit,
+                                  @Value("${websocket.session.send-time-limit-ms:10000}") long sendTimeLimitMillis,
+                                  @Value("${websocket.session.writer-threads:8}") int writerThreads) {
+        this.policy = policy;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.writerThreads = Math.max(1, writerThreads);
+        this.evictedCounter = meterRegistry.counter("websocket.session.dropped", "reason", "overflow");
+        this.replacedCounter = meterRegistry.counter("websocket.session.dropped", "reason", "superseded");
+        this.closedCounter = meterRegistry.counter("websocket.session.slow.closed");
+        this.queueWaitTimer = Timer.builder("websocket.session.queue.wait")
+            .description("Time a frame waits in its session buffer before it is written")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        Gauge.builder("websocket.session.lag.max", this, OutboundSessionLimiter::maxLagMillis)
+            .description("Age of the oldest frame still buffered for any session")
+            .baseUnit("milliseconds")
+            .register(meterRegistry);
+        Gauge.builder("websocket.session.buffered.bytes", this, OutboundSessionLimiter::bufferedBytes)
+            .register(meterRegistry);
+        Gauge.builder("websocket.sessions", sessions, Set::size)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            private final Map<String, BoundedSession> bySessionId = new ConcurrentHashMap<>();
+
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BoundedSession bounded = new BoundedSession(session);
+                bySessionId.put(session.getId(), bounded);
+                sessions.add(bounded);
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                BoundedSession bounded = bySessionId.get(session.getId());
+                super.handleMessage(bounded != null ? bounded : session, message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                BoundedSession bounded = bySessionId.get(session.getId());
+                super.handleTransportError(bounded != null ? bounded : session, exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                BoundedSession bounded = bySessionId.remove(session.getId());
+                if (bounded != null) {
+                    sessions.remove(bounded);
+                    bounded.discard();
+                }
+                super.afterConnectionClosed(bounded != null ? bounded : session, closeStatus);
+            }
+        };
+    }
+
+    @Override
+    public void start() {
+        AtomicInteger threadCount = new AtomicInteger();
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "websocket-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        writers.shutdown();
+        try {
+            writers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // The embedded web server starts and stops in phase DEFAULT_PHASE - 2048; sessions only end
+        // once it has stopped, so the writer pool has to stop in a later (lower) phase
+        return DEFAULT_PHASE - 3072;
+    }
+
+    private double maxLagMillis() {
+        long now = System.nanoTime();
+        long max = 0;
+        for (BoundedSession session : sessions) {
+            max = Math.max(max, session.lagNanos(now));
+        }
+        return max / 1_000_000.0;
+    }
+
+    private double bufferedBytes() {
+        long total = 0;
+        for (BoundedSession session : sessions) {
+            total += session.bufferedBytes;
+        }
+        return total;
+    }
+
+    /**
+     * Extracts the destination of a STOMP MESSAGE frame, or null for any other frame.
+     */
+    static String destinationOf(WebSocketMessage<?> message) {
+        if (!(message instanceof TextMessage text)) {
+            return null;
+        }
+        String payload = text.getPayload();
+        if (!payload.startsWith(MESSAGE_FRAME)) {
+            return null;
+        }
+        int headersEnd = payload.indexOf("\n\n");
+        int start = payload.indexOf(DESTINATION_HEADER, MESSAGE_FRAME.length() - 1);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = payload.indexOf('\n', start);
+        return end < 0 ? null : payload.substring(start, end);
+    }
+
+    private static final class Queued {
+
+        private WebSocketMessage<?> message;
+        private final String destination;
+        private final long enqueuedAt;
+
+        private Queued(WebSocketMessage<?> message, String destination, long enqueuedAt) {
+            this.message = message;
+            this.destination = destination;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final class BoundedSession extends WebSocketSessionDecorator {
+
+        // Guarded by this
+        private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+        private final Map<String, Queued> queuedByDestination = new HashMap<>();
+        private volatile long bufferedBytes;
+        private boolean draining;
+        private boolean discarded;
+
+        private BoundedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            String destination = destinationOf(message);
+            int length = message.getPayloadLength();
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (discarded) {
+                    return;
+                }
+                Queued oldest = queue.peek();
+                if (oldest != null && now - oldest.enqueuedAt > sendTimeLimitNanos) {
+                    discard();
+                    closedCounter.increment();
+                    closeQuietly(String.format("slow consumer, %d ms behind", (now - oldest.enqueuedAt) / 1_000_000));
+                    return;
+                }
+                Queued waiting = destination != null && policy == SessionOverflowPolicy.LATEST_PER_DESTINATION
+                    ? queuedByDestination.get(destination) : null;
+                if (waiting != null) {
+                    bufferedBytes += length - waiting.message.getPayloadLength();
+                    waiting.message = message;
+                    replacedCounter.increment();
+                } else {
+                    Queued queued = new Queued(message, destination, now);
+                    queue.add(queued);
+                    if (destination != null) {
+                        queuedByDestination.put(destination, queued);
+                    }
+                    bufferedBytes += length;
+                }
+                while (bufferedBytes > bufferSizeLimit && evictOldest()) {
+                    evictedCounter.increment();
+                }
+                if (!draining) {
+                    try {
+                        writers.execute(this::drain);
+                        draining = true;
+                    } catch (RejectedExecutionException e) {
+                        // Shutting down; the frame stays queued and the session is about to close
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drops the oldest broker message. Returns false if only protocol frames are left.
+         */
+        private boolean evictOldest() {
+            for (Iterator<Queued> it = queue.iterator(); it.hasNext(); ) {
+                Queued queued = it.next();
+                if (queued.destination != null) {
+                    it.remove();
+                    queuedByDestination.remove(queued.destination, queued);
+                    bufferedBytes -= queued.message.getPayloadLength();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void drain() {
+            while (true) {
+                Queued next;
+                synchronized (this) {
+                    next = queue.poll();
+                    if (next == null || discarded) {
+                        draining = false;
+                        return;
+                    }
+                    if (next.destination != null) {
+                        queuedByDestination.remove(next.destination, next);
+                    }
+                    bufferedBytes -= next.message.getPayloadLength();
+                }
+                queueWaitTimer.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    getDelegate().sendMessage(next.message);
+                } catch (Exception e) {
+                    discard();
+                    closeQuietly("send failed: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        private void closeQuietly(String reason) {
+            log.debug("Closing WebSocket session {}: {}", getId(), reason);
+            try {
+                writers.execute(() -> {
+                    try {
+                        getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (IOException e) {
+                        // Already broken
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down, which closes the session anyway
+            }
+        }
+
+        private synchronized void discard() {
+            discarded = true;
+            queue.clear();
+            queuedByDestination.clear();
+            bufferedBytes = 0;
+        }
+
+        private synchronized long lagNanos(long now) {
+            Queued oldest = queue.peek();
+            return oldest == null ? 0 : now - oldest.enqueuedAt;
+        }
+    }
+}
@@ -1,19 +1,55 @@
 package com.bustransport.geolocation.websocket;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final OutboundSessionLimiter outboundSessionLimiter;
+
+    @Value("${websocket.broker.pool-size:8}")
+    private int brokerPoolSize;
+
+    @Value("${websocket.broker.queue-capacity:10000}")
+    private int brokerQueueCapacity;
+
+    @Value("${websocket.session.message-size-limit:65536}")
+    private int messageSizeLimit;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        // Fan-out to subscribers runs on this pool, apart from the inbound client channel
+        config.configureBrokerChannel().taskExecutor()
+            .corePoolSize(brokerPoolSize)
+            .maxPoolSize(brokerPoolSize)
+            .queueCapacity(brokerQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Sends only queue into per-session buffers, so these threads never wait on a client
+        registration.taskExecutor()
+            .corePoolSize(brokerPoolSize)
+            .maxPoolSize(brokerPoolSize)
+            .queueCapacity(brokerQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeLimit)
+            .addDecoratorFactory(outboundSessionLimiter);
     }
 
     @Override
@@ -23,4 +59,3 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
             .withSockJS();
     }
 }
-
@@ -0,0 +1,39 @@
+-- Runs before Hibernate schema update. On a fresh database bus_locations is created as a table
+-- range-partitioned by recorded_at; Hibernate then only adds indexes and the bus foreign key.
+-- Daily partitions are created and retired by BusLocationPartitionManager. An existing
+-- unpartitioned bus_locations table is left untouched.
+DO $$
+BEGIN
+    IF to_regclass('bus_locations') IS NULL THEN
+        CREATE TABLE bus_locations (
+            id          BIGSERIAL       NOT NULL,
+            bus_id      BIGINT          NOT NULL,
+            latitude    NUMERIC(10, 7)  NOT NULL,
+            longitude   NUMERIC(10, 7)  NOT NULL,
+            speed       NUMERIC(5, 2)   NOT NULL,
+            heading     NUMERIC(5, 2)   NOT NULL,
+            altitude    NUMERIC(6, 2),
+            accuracy    NUMERIC(5, 2),
+            recorded_at TIMESTAMP(6)    NOT NULL,
+            odometer    NUMERIC(10, 2),
+            created_at  TIMESTAMP(6)    NOT NULL,
+            PRIMARY KEY (id, recorded_at)
+        ) PARTITION BY RANGE (recorded_at);
+
+        CREATE TABLE bus_locations_default PARTITION OF bus_locations DEFAULT;
+    END IF;
+END
+$$@@
+
+-- Hourly speed and presence rollups per grid tile, written by HeatmapAggregator
+CREATE TABLE IF NOT EXISTS heatmap_tiles (
+    bucket_start TIMESTAMP(0)     NOT NULL,
+    cell_row     INTEGER          NOT NULL,
+    cell_col     INTEGER          NOT NULL,
+    fix_count    INTEGER          NOT NULL,
+    speed_count  INTEGER          NOT NULL,
+    speed_sum    DOUBLE PRECISION NOT NULL,
+    speed_min    REAL,
+    speed_max    REAL,
+    PRIMARY KEY (bucket_start, cell_row, cell_col)
+)@@
@@ -117,7 +117,7 @@ const LiveMapPage = () => {
         webSocketService.subscribeToAlerts((alert) => {
           setAlerts(prev => [alert, ...prev].slice(0, 10));
           if (alert.alertType === 'DELAY' || alert.alertType === 'OFF_ROUTE') {
-            toast.warning(`Alert: ${alert.message}`);
+            toast.warning(`Alert: ${alert.description}`);
           }
         });
       },
@@ -129,19 +129,22 @@ const LiveMapPage = () => {
     );
   };
 
-  const updateBusLocation = useCallback((location) => {
+  const updateBusLocation = useCallback((update) => {
     setBusLocations(prev => {
-      const index = prev.findIndex(b => b.id === location.busId);
+      const index = prev.findIndex(b => b.id === update.busId);
+      if (update.removed) {
+        return index >= 0 ? prev.filter(b => b.id !== update.busId) : prev;
+      }
       if (index >= 0) {
         const updated = [...prev];
         updated[index] = {
           ...updated[index],
-          location: location
+          location: { ...updated[index].location, ...update }
         };
         return updated;
       } else {
         // New bus appeared
-        return [...prev, { id: location.busId, location: location }];
+        return [...prev, { id: update.busId, location: update }];
       }
     });
   }, []);
@@ -331,7 +334,7 @@ const LiveMapPage = () => {
                       <Warning fontSize="small" color="warning" sx={{ mr: 1 }} />
                       <ListItemText
                         primary={alert.alertType}
-                        secondary={alert.message}
+                        secondary={alert.description}
                       />
                     </ListItem>
                     {index < 4 && <Divider />}
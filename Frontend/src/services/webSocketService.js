@@ -5,6 +5,8 @@ class WebSocketService {
   constructor() {
     this.client = null;
     this.subscriptions = new Map();
+    this.lastSequences = new Map();
+    this.awaitingKeyframe = new Set();
     this.connected = false;
   }
 
@@ -50,6 +52,8 @@ class WebSocketService {
         subscription.unsubscribe();
       });
       this.subscriptions.clear();
+      this.lastSequences.clear();
+      this.awaitingKeyframe.clear();
 
       this.client.deactivate();
       this.connected = false;
@@ -63,9 +67,8 @@ class WebSocketService {
       return null;
     }
 
-    const subscription = this.client.subscribe('/topic/locations', (message) => {
-      const location = JSON.parse(message.body);
-      callback(location);
+    const subscription = this.client.subscribe('/topic/bus-locations', (message) => {
+      this.dispatchFrame('/topic/bus-locations', message, callback);
     });
 
     this.subscriptions.set('locations', subscription);
@@ -78,15 +81,56 @@ class WebSocketService {
       return null;
     }
 
-    const subscription = this.client.subscribe(`/topic/locations/${busId}`, (message) => {
-      const location = JSON.parse(message.body);
-      callback(location);
+    const subscription = this.client.subscribe(`/topic/bus/${busId}`, (message) => {
+      this.dispatchFrame(`/topic/bus/${busId}`, message, callback);
     });
 
     this.subscriptions.set(`location-${busId}`, subscription);
     return subscription;
   }
 
+  subscribeToRouteLocations(routeId, callback) {
+    if (!this.client || !this.connected) {
+      console.error('WebSocket not connected');
+      return null;
+    }
+
+    const subscription = this.client.subscribe(`/topic/route/${routeId}`, (message) => {
+      this.dispatchFrame(`/topic/route/${routeId}`, message, callback);
+    });
+
+    this.subscriptions.set(`route-${routeId}`, subscription);
+    return subscription;
+  }
+
+  // Location topics carry frames of per-bus updates; fields that did not change are omitted and
+  // fields the bus stopped reporting are listed in `cleared`, handed on as null. A `removed`
+  // update means the bus left the topic.
+  // Deltas only apply on top of the previous frame of the topic, so after a missed frame they
+  // are ignored until the next keyframe brings the full state again.
+  dispatchFrame(topic, message, callback) {
+    const frame = JSON.parse(message.body);
+    if (frame.keyframe) {
+      this.awaitingKeyframe.delete(topic);
+    } else if (this.awaitingKeyframe.has(topic)) {
+      return;
+    } else {
+      const lastSequence = this.lastSequences.get(topic);
+      if (lastSequence !== undefined && frame.previousSequence !== lastSequence) {
+        this.awaitingKeyframe.add(topic);
+        return;
+      }
+    }
+    this.lastSequences.set(topic, frame.sequence);
+    (frame.updates || []).forEach((update) => {
+      const { cleared, ...fields } = update;
+      (cleared || []).forEach((field) => {
+        fields[field] = null;
+      });
+      callback(fields, frame.keyframe);
+    });
+  }
+
   subscribeToAlerts(callback) {
     if (!this.client || !this.connected) {
       console.error('WebSocket not connected');